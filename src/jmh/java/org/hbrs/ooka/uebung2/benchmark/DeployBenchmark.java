@@ -0,0 +1,65 @@
+package org.hbrs.ooka.uebung2.benchmark;
+
+import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the deployment of one synthetic component depending on the amount of classes in its jar,
+ * once with a cold metadata index (full scan) and once with a warm one, the latter also with lazy port activation.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+@State(Scope.Thread)
+public class DeployBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int classes;
+
+    private Path dir;
+    private File jar;
+    private RuntimeEnvironment re;
+    private Component component;
+
+    @Setup(Level.Trial)
+    public void locateJar() {
+        LoggingBenchmark.silenceConsole();
+        dir = SyntheticJarGenerator.outputDirectory().resolve("classes-" + classes);
+        jar = dir.resolve("Synthetic.jar").toFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() throws Exception {
+        re = new RuntimeEnvironment(dir.toString());
+        component = new Component(jar);
+    }
+
+    @Benchmark
+    public Component deployIndexed() throws Exception {
+        component.deploy(re);
+        return component;
+    }
+
+    @Benchmark
+    public Component deployLazy() throws Exception {
+        re.setLazyActivation(true);
+        component.deploy(re);
+        return component;
+    }
+
+    @Benchmark
+    public Component deployCold() throws Exception {
+        // A fresh environment without index file scans the jar again
+        Files.deleteIfExists(dir.resolve(RuntimeEnvironment.METADATA_INDEX_FILE));
+        RuntimeEnvironment cold = new RuntimeEnvironment(dir.toString());
+        component.deploy(cold);
+        return component;
+    }
+}
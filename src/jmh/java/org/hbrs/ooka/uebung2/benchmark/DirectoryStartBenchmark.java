@@ -0,0 +1,54 @@
+package org.hbrs.ooka.uebung2.benchmark;
+
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RuntimeEnvironment#start()}, {@link RuntimeEnvironment#refresh()} and
+ * {@link RuntimeEnvironment#deployAll()} on a directory with many component jars.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class DirectoryStartBenchmark {
+    @Param({"200"})
+    public int jars;
+
+    private String dir;
+    private RuntimeEnvironment re;
+
+    @Setup(Level.Trial)
+    public void locateDirectory() {
+        dir = SyntheticJarGenerator.outputDirectory().resolve("directory-" + jars).toString();
+        LoggingBenchmark.silenceConsole();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() {
+        re = new RuntimeEnvironment(dir);
+    }
+
+    @Benchmark
+    public RuntimeEnvironment start() {
+        re.start();
+        return re;
+    }
+
+    @Benchmark
+    public RuntimeEnvironment startAndRefresh() {
+        re.start();
+        re.refresh();
+        return re;
+    }
+
+    @Benchmark
+    public int startAndDeployAll() {
+        re.start();
+        return re.deployAll();
+    }
+}
@@ -0,0 +1,46 @@
+package org.hbrs.ooka.uebung2.benchmark;
+
+import org.hbrs.ooka.uebung2.util.Invokers;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the reflective call of start and stop methods, as {@code ComponentDeployed} did it before,
+ * with the invokers resolved once at deploy time. Port calls are measured by {@link PortDispatchBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LifecycleInvokerBenchmark {
+    private static int counter;
+
+    private Method startMethod;
+    private Invokers.StaticInvoker startInvoker;
+
+    public static void start() {
+        counter++;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        startMethod = LifecycleInvokerBenchmark.class.getMethod("start");
+        startInvoker = Invokers.staticInvoker(startMethod);
+    }
+
+    @Benchmark
+    public void reflectiveStart() throws Exception {
+        // The old path set the accessible flag on every transition
+        startMethod.setAccessible(true);
+        startMethod.invoke(null);
+    }
+
+    @Benchmark
+    public void invokerStart() throws Throwable {
+        startInvoker.invoke();
+    }
+}
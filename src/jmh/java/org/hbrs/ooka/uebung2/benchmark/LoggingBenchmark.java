@@ -0,0 +1,69 @@
+package org.hbrs.ooka.uebung2.benchmark;
+
+import org.hbrs.ooka.uebung2.util.LoggerUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures the throughput of loggers created by {@link LoggerUtil}. The console is replaced by a sink,
+ * so the numbers show the cost of the logging path rather than of the terminal.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private Logger logger;
+
+    /**
+     * Redirects {@link System#out} into a sink. Loggers capture the stream when they are created,
+     * so this has to be called before the first logger is requested.
+     */
+    static void silenceConsole() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Setup
+    public void setup() {
+        silenceConsole();
+        logger = LoggerUtil.getLogger(LoggingBenchmark.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void info1Thread() {
+        logger.info("Die Komponente \"Benchmark\" mit der ID 0 wurde erfolgreich deployt.");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void info4Threads() {
+        logger.info("Die Komponente \"Benchmark\" mit der ID 0 wurde erfolgreich deployt.");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void belowLevel() {
+        logger.finest("Wird nicht ausgegeben");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void belowLevelConcatenated() {
+        logger.fine("Die Komponente \"" + logger.getName() + "\" mit der ID " + System.identityHashCode(logger) +
+                " wurde erfolgreich deployt.");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void belowLevelSupplier() {
+        logger.fine(() -> "Die Komponente \"" + logger.getName() + "\" mit der ID " + System.identityHashCode(logger) +
+                " wurde erfolgreich deployt.");
+    }
+}
@@ -0,0 +1,64 @@
+package org.hbrs.ooka.uebung2.benchmark;
+
+import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironmentAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RuntimeEnvironmentAPI#getPort(Class)} with several instances of one port type under contention,
+ * and a call through a port proxy, which dispatches on every call, against the same call on a dispatched instance.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortDispatchBenchmark {
+    @Param({"1", "4"})
+    public int instances;
+
+    private RuntimeEnvironmentAPI api;
+    private CharSequence proxy;
+
+    @Setup
+    public void setup() throws Exception {
+        api = new RuntimeEnvironmentAPI();
+        Component component = new Component(SyntheticJarGenerator.outputDirectory()
+                .resolve("classes-10").resolve("Synthetic.jar").toFile());
+        for (int i = 0; i < instances; i++) api.addPort(component, new StringBuilder("port"));
+        proxy = api.getPort(CharSequence.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object getPort1Thread() {
+        return api.getPort(StringBuilder.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int callDispatched1Thread() {
+        return api.getPort(StringBuilder.class).length();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int callProxy1Thread() {
+        return proxy.length();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object getPort4Threads() {
+        return api.getPort(StringBuilder.class);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Object getPortMaxThreads() {
+        return api.getPort(StringBuilder.class);
+    }
+}
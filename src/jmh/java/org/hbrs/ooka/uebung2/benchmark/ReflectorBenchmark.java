@@ -0,0 +1,85 @@
+package org.hbrs.ooka.uebung2.benchmark;
+
+import org.hbrs.ooka.uebung2.util.Reflector;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups of {@link Reflector} on a small class hierarchy. JDK classes cannot be used,
+ * because {@link Reflector} makes every member accessible, which the module system refuses for them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReflectorBenchmark {
+    private final Class<?>[] updateParameters = {String.class, Double.class};
+    private final Class<?>[] constructorParameters = {Integer.class, String.class, Double.class};
+    private final Class<?>[] compatibleParameters = {ArrayList.class};
+
+    public static class Entity implements Comparable<Entity> {
+        protected int id;
+
+        public void update(Object value) {
+        }
+
+        @Override
+        public int compareTo(Entity other) {
+            return Integer.compare(id, other.id);
+        }
+    }
+
+    public static class Product extends Entity {
+        private String name;
+        private double price;
+
+        public Product() {
+        }
+
+        public Product(int id, String name, double price) {
+            this.id = id;
+            this.name = name;
+            this.price = price;
+        }
+
+        public void update(String name, double price) {
+            this.name = name;
+            this.price = price;
+        }
+    }
+
+    @Benchmark
+    public Object getField() {
+        return Reflector.getField(Product.class, "id");
+    }
+
+    @Benchmark
+    public Object getMethodByTypes() {
+        return Reflector.getMethod(Product.class, "update", updateParameters);
+    }
+
+    @Benchmark
+    public Object getMethodByIndex() {
+        return Reflector.getMethod(Product.class, "update", 1);
+    }
+
+    @Benchmark
+    public Object getConstructor() {
+        return Reflector.getConstructor(Product.class, constructorParameters);
+    }
+
+    @Benchmark
+    public boolean containsMethod() {
+        return Reflector.containsMethod(Product.class, "compareTo", Entity.class);
+    }
+
+    @Benchmark
+    public boolean isCompatible() {
+        return Reflector.isCompatible(new Class<?>[]{List.class}, compatibleParameters);
+    }
+}
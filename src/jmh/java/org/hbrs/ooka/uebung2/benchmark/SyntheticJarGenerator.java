@@ -0,0 +1,260 @@
+package org.hbrs.ooka.uebung2.benchmark;
+
+import org.hbrs.ooka.uebung2.annotations.Port;
+import org.hbrs.ooka.uebung2.annotations.Start;
+import org.hbrs.ooka.uebung2.annotations.Stop;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.IRuntimeEnvironmentAPI;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Generates the synthetic component jars the benchmarks run on. It writes the class files directly, so the
+ * suite needs neither a compiler nor network access. The benchmark profile runs it before the benchmarks.
+ * <ul>
+ *     <li>{@code classes-<n>/Synthetic.jar}: one component with a port, a lifecycle class and {@code n} filler classes.</li>
+ *     <li>{@code directory-<n>/Synthetic<i>.jar}: {@code n} small components in one directory.</li>
+ * </ul>
+ */
+public class SyntheticJarGenerator {
+    public static final String OUTPUT_PROPERTY = "benchmark.jars";
+    public static final String DEFAULT_OUTPUT = "target/benchmark-jars";
+    public static final int[] CLASS_COUNTS = {10, 1_000, 10_000};
+    public static final int[] DIRECTORY_SIZES = {200};
+
+    static final String PORT_CLASS = "synthetic/SyntheticPort";
+    static final String LIFECYCLE_CLASS = "synthetic/SyntheticMain";
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get(args.length > 0 ? args[0] : DEFAULT_OUTPUT);
+        for (int classes : CLASS_COUNTS) {
+            Path dir = Files.createDirectories(output.resolve("classes-" + classes));
+            writeJar(dir.resolve("Synthetic.jar"), classes);
+        }
+        for (int jars : DIRECTORY_SIZES) {
+            Path dir = Files.createDirectories(output.resolve("directory-" + jars));
+            for (int i = 0; i < jars; i++) writeJar(dir.resolve("Synthetic" + i + ".jar"), 10);
+        }
+        System.out.println("Synthetische Komponenten erzeugt in " + output.toAbsolutePath());
+    }
+
+    public static Path outputDirectory() {
+        return Paths.get(System.getProperty(OUTPUT_PROPERTY, DEFAULT_OUTPUT));
+    }
+
+    static void writeJar(Path jar, int fillerClasses) throws IOException {
+        if (Files.isRegularFile(jar)) return;
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            putEntry(out, PORT_CLASS + ".class", portClass());
+            putEntry(out, LIFECYCLE_CLASS + ".class", lifecycleClass());
+            for (int i = 0; i < fillerClasses; i++) {
+                // Spread the filler over packages like a real code base
+                String name = "synthetic/p" + (i / 100) + "/Filler" + i;
+                putEntry(out, name + ".class", new ClassFile(name).toBytes());
+            }
+        }
+    }
+
+    private static void putEntry(JarOutputStream out, String name, byte[] bytes) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    private static byte[] portClass() {
+        ClassFile port = new ClassFile(PORT_CLASS);
+        port.annotations.add(descriptorOf(Port.class.getName()));
+        // public SyntheticPort() { super(); }
+        int objectInit = port.methodRef("java/lang/Object", "<init>", "()V");
+        port.addMethod(Modifier.PUBLIC, "<init>", "()V", 1, 1,
+                new byte[]{0x2A, (byte) 0xB7, (byte) (objectInit >> 8), (byte) objectInit, (byte) 0xB1}, null);
+        return port.toBytes();
+    }
+
+    private static byte[] lifecycleClass() {
+        ClassFile main = new ClassFile(LIFECYCLE_CLASS);
+        main.addField(Modifier.PUBLIC | Modifier.STATIC, "api", descriptorOf(IRuntimeEnvironmentAPI.class.getName()));
+        byte[] returnOnly = {(byte) 0xB1};
+        main.addMethod(Modifier.PUBLIC | Modifier.STATIC, "start", "()V", 0, 0, returnOnly, descriptorOf(Start.class.getName()));
+        main.addMethod(Modifier.PUBLIC | Modifier.STATIC, "stop", "()V", 0, 0, returnOnly, descriptorOf(Stop.class.getName()));
+        return main.toBytes();
+    }
+
+    private static String descriptorOf(String className) {
+        return "L" + className.replace('.', '/') + ";";
+    }
+
+    /**
+     * Minimal class file writer for classes extending {@link Object}, supporting fields, methods with plain code
+     * and marker annotations.
+     */
+    private static final class ClassFile {
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream poolOut = new DataOutputStream(pool);
+        private final Map<String, Integer> poolIndex = new HashMap<>();
+        private int poolSize = 1;
+
+        private final int thisClass;
+        private final int superClass;
+        private final List<byte[]> fields = new ArrayList<>();
+        private final List<byte[]> methods = new ArrayList<>();
+        final List<String> annotations = new ArrayList<>();
+
+        ClassFile(String name) {
+            thisClass = classRef(name);
+            superClass = classRef("java/lang/Object");
+        }
+
+        void addField(int access, String name, String descriptor) {
+            fields.add(member(access, name, descriptor, List.of()));
+        }
+
+        void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code, String annotation) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, out -> {
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(code.length);
+                out.write(code);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes
+            });
+            List<byte[]> attributes = new ArrayList<>();
+            attributes.add(attribute("Code", bytes.toByteArray()));
+            if (annotation != null) attributes.add(annotationsAttribute(List.of(annotation)));
+            methods.add(member(access, name, descriptor, attributes));
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            int clazz = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = constant("N" + name + descriptor, out -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return constant("M" + owner + name + descriptor, out -> {
+                out.writeByte(10);
+                out.writeShort(clazz);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        byte[] toBytes() {
+            // Attributes first, they may still add constants
+            List<byte[]> classAttributes = annotations.isEmpty() ? List.of() : List.of(annotationsAttribute(annotations));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, out -> {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(52); // Java 8 class files need no stack map frames for straight code
+                out.writeShort(poolSize);
+                out.write(pool.toByteArray());
+                out.writeShort(Modifier.PUBLIC | 0x20); // ACC_SUPER
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(0); // interfaces
+                writeAll(out, fields);
+                writeAll(out, methods);
+                writeAll(out, classAttributes);
+            });
+            return bytes.toByteArray();
+        }
+
+        private byte[] member(int access, String name, String descriptor, List<byte[]> attributes) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, out -> {
+                out.writeShort(access);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+                writeAll(out, attributes);
+            });
+            return bytes.toByteArray();
+        }
+
+        private byte[] annotationsAttribute(List<String> descriptors) {
+            List<Integer> indices = descriptors.stream().map(this::utf8).toList();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, out -> {
+                out.writeShort(indices.size());
+                for (int index : indices) {
+                    out.writeShort(index);
+                    out.writeShort(0); // no element values
+                }
+            });
+            return attribute("RuntimeVisibleAnnotations", bytes.toByteArray());
+        }
+
+        private byte[] attribute(String name, byte[] content) {
+            int nameIndex = utf8(name);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, out -> {
+                out.writeShort(nameIndex);
+                out.writeInt(content.length);
+                out.write(content);
+            });
+            return bytes.toByteArray();
+        }
+
+        private int classRef(String name) {
+            int nameIndex = utf8(name);
+            return constant("C" + name, out -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        private int utf8(String value) {
+            return constant("U" + value, out -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        /**
+         * Adds a constant unless it exists. {@code writer} must not add constants itself.
+         */
+        private int constant(String key, Writer writer) {
+            Integer index = poolIndex.get(key);
+            if (index != null) return index;
+            write(pool, writer);
+            poolIndex.put(key, poolSize);
+            return poolSize++;
+        }
+
+        private static void writeAll(DataOutputStream out, List<byte[]> entries) throws IOException {
+            out.writeShort(entries.size());
+            for (byte[] entry : entries) out.write(entry);
+        }
+
+        private static void write(OutputStream target, Writer writer) {
+            try {
+                DataOutputStream out = new DataOutputStream(target);
+                writer.write(out);
+                out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @FunctionalInterface
+        private interface Writer {
+            void write(DataOutputStream out) throws IOException;
+        }
+    }
+}
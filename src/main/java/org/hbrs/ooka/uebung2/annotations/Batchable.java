@@ -0,0 +1,34 @@
+package org.hbrs.ooka.uebung2.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a port interface with exactly one parameter whose calls through a port proxy may be collected and
+ * delivered as one call of {@link #bulkMethod()}. The bulk method of the same interface takes a {@link java.util.List}
+ * of the arguments and returns a {@link java.util.List} with one result per argument in the same order. Callers of the
+ * marked method wait for their result, unless it returns a {@link java.util.concurrent.CompletableFuture}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value = ElementType.METHOD)
+public @interface Batchable {
+    String bulkMethod();
+
+    /**
+     * A batch is delivered as soon as it has this many calls.
+     */
+    int maxBatchSize() default 64;
+
+    /**
+     * A batch is delivered at the latest this long after its first call.
+     */
+    long maxDelayMicros() default 500;
+
+    /**
+     * The calls of a batch fail with a {@link java.util.concurrent.TimeoutException} if its bulk call takes longer.
+     * Synchronous callers get it as cause of an {@link IllegalStateException}.
+     */
+    long timeoutMillis() default 30_000;
+}
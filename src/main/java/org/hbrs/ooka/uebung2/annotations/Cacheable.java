@@ -0,0 +1,26 @@
+package org.hbrs.ooka.uebung2.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method of a port interface whose results a port proxy may cache, because they only depend on the arguments.
+ * The arguments are the key of a result, so they have to implement {@code equals} and {@code hashCode}; results of
+ * null and failed calls are not cached. The cache is shared by all instances of the port type, i.e. by all replicas of
+ * a component, and cleared when the component is redeployed or undeployed.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value = ElementType.METHOD)
+public @interface Cacheable {
+    /**
+     * The least recently used result is evicted when the cache would grow beyond this many results.
+     */
+    int maxSize() default 1024;
+
+    /**
+     * A result is cached at most this long after the call returning it.
+     */
+    long ttlMillis() default 60_000;
+}
@@ -0,0 +1,15 @@
+package org.hbrs.ooka.uebung2.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link Port} class whose instances keep no state between calls and share nothing mutable through static
+ * fields. Additional replicas of such a port are created in the class loader of its component instead of a new one.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(value = ElementType.TYPE)
+public @interface Stateless {
+}
@@ -6,7 +6,7 @@ import org.jetbrains.annotations.Nullable;
 import java.lang.reflect.Method;
 
 public abstract class AbstractComponentState {
-    public @Nullable Method[] deploy(Component component, RuntimeEnvironment re) throws Exception{
+    public @Nullable Method[] deploy(Component component, RuntimeEnvironment re, boolean lazyPorts) throws Exception{
         throw new ComponentStateUnsuportedOperationException("Deploying is not supported in State " + getState());
     }
 
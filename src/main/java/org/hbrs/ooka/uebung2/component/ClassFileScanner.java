@@ -0,0 +1,364 @@
+package org.hbrs.ooka.uebung2.component;
+
+import org.hbrs.ooka.uebung2.annotations.Port;
+import org.hbrs.ooka.uebung2.annotations.Start;
+import org.hbrs.ooka.uebung2.annotations.Stateless;
+import org.hbrs.ooka.uebung2.annotations.Stop;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.IRuntimeEnvironmentAPI;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Computes the {@link ComponentMetadata} of a jar by reading the annotation descriptors directly from the class bytes,
+ * so no class of the component has to be loaded for scanning. Like {@link Class#getMethods()} and {@link Class#getFields()}
+ * the lifecycle methods and API fields of superclasses count as well. Only for classes which declare or inherit such a
+ * member inside the jar, a superclass outside the jar is inspected by reflection, unless it belongs to the JDK.
+ */
+final class ClassFileScanner {
+    private static final String PORT_DESCRIPTOR = descriptorOf(Port.class);
+    private static final String START_DESCRIPTOR = descriptorOf(Start.class);
+    private static final String STOP_DESCRIPTOR = descriptorOf(Stop.class);
+    private static final String STATELESS_DESCRIPTOR = descriptorOf(Stateless.class);
+    private static final String API_DESCRIPTOR = descriptorOf(IRuntimeEnvironmentAPI.class);
+    private static final String ANNOTATIONS_ATTRIBUTE = "RuntimeVisibleAnnotations";
+
+    /** Below this amount of class entries scanning in parallel costs more than it saves. */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    private ClassFileScanner() {
+    }
+
+    /**
+     * Scans given jar. The jar is opened once and closed before returning.
+     * @param componentName Name of the component used for log messages.
+     * @param classLoader Loader of superclasses which are not part of the jar. Null uses the loader of the runtime.
+     */
+    static ComponentMetadata scan(@NotNull File jar, @NotNull String componentName, @Nullable ClassLoader classLoader) throws IOException {
+        final List<JarEntry> entries;
+        final Map<String, String> superNames = new ConcurrentHashMap<>();
+        final Map<String, ScannedClass> declared = new HashMap<>();
+        try (JarFile jarFile = new JarFile(jar)) {
+            entries = jarFile.stream().filter(ClassFileScanner::isCandidateEntry).toList();
+            // JarFile supports concurrent reads of different entries
+            (entries.size() >= PARALLEL_THRESHOLD ? entries.parallelStream() : entries.stream())
+                    .map(entry -> scanEntry(jarFile, entry, superNames))
+                    .filter(Objects::nonNull)
+                    .toList()
+                    .forEach(scannedClass -> declared.put(scannedClass.className, scannedClass));
+        }
+
+        List<String> ports = new ArrayList<>();
+        List<String> statelessPorts = new ArrayList<>();
+        ScannedClass lifecycle = null;
+        Set<String> jarClasses = new HashSet<>();
+        for (JarEntry entry : entries) jarClasses.add(classNameOf(entry));
+        for (JarEntry entry : entries) {
+            ScannedClass scannedClass = inherit(classNameOf(entry), jarClasses, declared, superNames, classLoader, componentName);
+            if (scannedClass == null) continue;
+            if (scannedClass.port) ports.add(scannedClass.className);
+            if (scannedClass.port && scannedClass.stateless) statelessPorts.add(scannedClass.className);
+            if (!scannedClass.hasValidLifecycle(componentName)) continue;
+
+            if (lifecycle != null) {
+                String kept = lifecycle.className;
+                RuntimeEnvironment.getComponentLogger(componentName).warning(() -> "Mehr als eine Startklasse in der " +
+                        "Komponente " + componentName + " gefunden. Belasse zuerst gefundene Startklasse " + kept);
+            }
+            else {
+                lifecycle = scannedClass;
+            }
+        }
+
+        if (lifecycle == null) {
+            return new ComponentMetadata(List.copyOf(ports), List.copyOf(statelessPorts), null, null, null, List.of());
+        }
+        return new ComponentMetadata(List.copyOf(ports), List.copyOf(statelessPorts), lifecycle.className,
+                nameOf(lifecycle.startMethods.get(0)), nameOf(lifecycle.stopMethods.get(0)), List.copyOf(lifecycle.apiFields));
+    }
+
+    /**
+     * Adds the start and stop methods and API fields of the superclasses to a class, unless they are hidden by a member
+     * of the same signature further down. Only classes which declare such a member or a port themselves or inherit one
+     * inside the jar are candidates; for them a superclass outside the jar is inspected by reflection, unless it
+     * belongs to the JDK.
+     * @return Returns the class with its inherited members or null if it is no candidate.
+     */
+    private static @Nullable ScannedClass inherit(String className, Set<String> jarClasses, Map<String, ScannedClass> declared,
+                                                  Map<String, String> superNames, @Nullable ClassLoader classLoader,
+                                                  String componentName) {
+        String name = className;
+        while (name != null && !declared.containsKey(name)) name = superNames.get(name);
+        if (name == null) return null;
+
+        ScannedClass own = declared.get(className);
+        ScannedClass inherited = new ScannedClass(className);
+        inherited.port = own != null && own.port;
+        inherited.stateless = own != null && own.stateless;
+        Set<String> hiddenMethods = new HashSet<>();
+        Set<String> hiddenFields = new HashSet<>();
+        String current = className;
+        while (current != null && jarClasses.contains(current)) {
+            ScannedClass scannedClass = declared.get(current);
+            if (scannedClass != null) {
+                for (String method : scannedClass.startMethods) if (!hiddenMethods.contains(method)) inherited.startMethods.add(method);
+                for (String method : scannedClass.stopMethods) if (!hiddenMethods.contains(method)) inherited.stopMethods.add(method);
+                for (String field : scannedClass.apiFields) if (!hiddenFields.contains(field)) inherited.apiFields.add(field);
+                hiddenMethods.addAll(scannedClass.publicMethods);
+                hiddenFields.addAll(scannedClass.publicFields);
+            }
+            current = superNames.get(current);
+        }
+        if (current != null && !isJdkType(current)) {
+            inheritByReflection(inherited, current, hiddenMethods, hiddenFields, classLoader, componentName);
+        }
+        return inherited;
+    }
+
+    /**
+     * Adds the start and stop methods and API fields of a superclass which is not part of the jar.
+     */
+    private static void inheritByReflection(ScannedClass inherited, String superName, Set<String> hiddenMethods,
+                                            Set<String> hiddenFields, @Nullable ClassLoader classLoader, String componentName) {
+        Class<?> superClass;
+        try {
+            superClass = Class.forName(superName, false, classLoader == null ? ClassFileScanner.class.getClassLoader() : classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            RuntimeEnvironment.getComponentLogger(componentName).warning(() -> "Oberklasse " + superName + " der Klasse " +
+                    inherited.className + " in der Komponente " + componentName + " konnte nicht geladen werden.");
+            return;
+        }
+        for (Method method : superClass.getMethods()) {
+            if (method.getDeclaringClass().isInterface()) continue;
+            String key = method.getName() + MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString();
+            if (hiddenMethods.contains(key)) continue;
+            if (method.isAnnotationPresent(Start.class)) inherited.startMethods.add(key);
+            if (method.isAnnotationPresent(Stop.class)) inherited.stopMethods.add(key);
+        }
+        for (Field field : superClass.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == IRuntimeEnvironmentAPI.class
+                    && !hiddenFields.contains(field.getName())) {
+                inherited.apiFields.add(field.getName());
+            }
+        }
+    }
+
+    private static boolean isJdkType(String className) {
+        return className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("jdk.")
+                || className.startsWith("sun.") || className.startsWith("com.sun.");
+    }
+
+    private static String classNameOf(JarEntry entry) {
+        String name = entry.getName();
+        return name.substring(0, name.length() - ".class".length()).replace('/', '.');
+    }
+
+    /**
+     * @return Returns the name of a method key consisting of name and descriptor.
+     */
+    private static String nameOf(String methodKey) {
+        return methodKey.substring(0, methodKey.indexOf('('));
+    }
+
+    private static boolean isCandidateEntry(JarEntry entry) {
+        String name = entry.getName();
+        return !entry.isDirectory() && name.endsWith(".class") && !name.startsWith("META-INF") && !name.startsWith("test");
+    }
+
+    private static @Nullable ScannedClass scanEntry(JarFile jarFile, JarEntry entry, Map<String, String> superNames) {
+        try (InputStream in = jarFile.getInputStream(entry)) {
+            return parse(in.readAllBytes(), superNames);
+        } catch (IOException e) {
+            throw new IllegalStateException("Klasse " + entry.getName() + " konnte nicht gelesen werden.", e);
+        }
+    }
+
+    /**
+     * @param superNames Receives the name of the superclass of the given class, unless it is {@link Object}.
+     * @return Returns the relevant facts of the given class file or null if it declares neither a port, a lifecycle
+     * method nor an API field. Members of superclasses are not part of them.
+     */
+    static @Nullable ScannedClass parse(byte[] classBytes, Map<String, String> superNames) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(classBytes));
+        if (in.readInt() != 0xCAFEBABE) throw new IOException("Keine gültige Klassendatei.");
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+
+        // Constant pool: only Utf8 and Class entries are needed
+        int poolSize = in.readUnsignedShort();
+        String[] utf8 = new String[poolSize];
+        int[] classNameIndex = new int[poolSize];
+        for (int i = 1; i < poolSize; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = in.readUTF();
+                case 7 -> classNameIndex[i] = in.readUnsignedShort();
+                case 8, 16, 19, 20 -> in.skipBytes(2);
+                case 15 -> in.skipBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipBytes(4);
+                case 5, 6 -> {
+                    in.skipBytes(8);
+                    i++; // long and double take two slots
+                }
+                default -> throw new IOException("Unbekannter Konstantentyp " + tag);
+            }
+        }
+
+        in.readUnsignedShort(); // access flags
+        String className = utf8[classNameIndex[in.readUnsignedShort()]].replace('/', '.');
+        int superIndex = in.readUnsignedShort(); // 0 for java.lang.Object only
+        String superName = superIndex == 0 ? null : utf8[classNameIndex[superIndex]].replace('/', '.');
+        if (superName != null && !superName.equals(Object.class.getName())) superNames.put(className, superName);
+        ScannedClass scanned = new ScannedClass(className);
+        in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            int access = in.readUnsignedShort();
+            String name = utf8[in.readUnsignedShort()];
+            String descriptor = utf8[in.readUnsignedShort()];
+            skipAttributes(in);
+            if (!Modifier.isPublic(access)) continue;
+            scanned.publicFields.add(name);
+            if (Modifier.isStatic(access) && API_DESCRIPTOR.equals(descriptor)) scanned.apiFields.add(name);
+        }
+
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            int access = in.readUnsignedShort();
+            String key = utf8[in.readUnsignedShort()] + utf8[in.readUnsignedShort()]; // name and descriptor
+            List<String> annotations = readAnnotations(in, utf8);
+            if (!Modifier.isPublic(access)) continue;
+            scanned.publicMethods.add(key);
+            if (annotations.contains(START_DESCRIPTOR)) scanned.startMethods.add(key);
+            if (annotations.contains(STOP_DESCRIPTOR)) scanned.stopMethods.add(key);
+        }
+
+        List<String> classAnnotations = readAnnotations(in, utf8);
+        scanned.port = classAnnotations.contains(PORT_DESCRIPTOR);
+        scanned.stateless = classAnnotations.contains(STATELESS_DESCRIPTOR);
+        return scanned.isRelevant() ? scanned : null;
+    }
+
+    /**
+     * Reads an attribute table and returns the type descriptors of all runtime visible annotations in it.
+     */
+    private static List<String> readAnnotations(DataInputStream in, String[] utf8) throws IOException {
+        List<String> annotations = new ArrayList<>(0);
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if (!ANNOTATIONS_ATTRIBUTE.equals(attributeName)) {
+                in.skipBytes(length);
+                continue;
+            }
+            int annotationCount = in.readUnsignedShort();
+            for (int j = 0; j < annotationCount; j++) {
+                annotations.add(utf8[in.readUnsignedShort()]);
+                skipElementValuePairs(in);
+            }
+        }
+        return annotations;
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            in.readUnsignedShort();
+            in.skipBytes(in.readInt());
+        }
+    }
+
+    private static void skipElementValuePairs(DataInputStream in) throws IOException {
+        int pairCount = in.readUnsignedShort();
+        for (int i = 0; i < pairCount; i++) {
+            in.readUnsignedShort(); // element name
+            skipElementValue(in);
+        }
+    }
+
+    private static void skipElementValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e' -> in.skipBytes(4);
+            case '@' -> {
+                in.readUnsignedShort();
+                skipElementValuePairs(in);
+            }
+            case '[' -> {
+                int values = in.readUnsignedShort();
+                for (int i = 0; i < values; i++) skipElementValue(in);
+            }
+            default -> in.skipBytes(2); // constants and class literals
+        }
+    }
+
+    private static String descriptorOf(Class<?> clazz) {
+        return "L" + clazz.getName().replace('.', '/') + ";";
+    }
+
+    /**
+     * Methods are identified by their name followed by their descriptor, so a method only hides a superclass method
+     * of the same signature.
+     */
+    static final class ScannedClass {
+        final String className;
+        final List<String> startMethods = new ArrayList<>(0);
+        final List<String> stopMethods = new ArrayList<>(0);
+        final List<String> apiFields = new ArrayList<>(0);
+        final Set<String> publicMethods = new HashSet<>();
+        final Set<String> publicFields = new HashSet<>();
+        boolean port;
+        boolean stateless;
+
+        ScannedClass(String className) {
+            this.className = className;
+        }
+
+        boolean isRelevant() {
+            return port || !startMethods.isEmpty() || !stopMethods.isEmpty() || !apiFields.isEmpty();
+        }
+
+        boolean hasValidLifecycle(String componentName) {
+            if (startMethods.isEmpty() && stopMethods.isEmpty()) return false;
+            if (startMethods.size() > 1) {
+                RuntimeEnvironment.getComponentLogger(componentName).severe(() -> "Mehr als eine Startmethode in der Komponente " + componentName + " gefunden.");
+                return false;
+            }
+            if (stopMethods.size() > 1) {
+                RuntimeEnvironment.getComponentLogger(componentName).severe(() -> "Mehr als eine Stopmethode in der Komponente " + componentName + " gefunden.");
+                return false;
+            }
+            if (startMethods.isEmpty()) {
+                RuntimeEnvironment.getComponentLogger(componentName).severe(() -> "Keine Startmethode in der Komponente " + componentName + " gefunden, obwohl eine Stopmethode vorhanden ist.");
+                return false;
+            }
+            if (stopMethods.isEmpty()) {
+                RuntimeEnvironment.getComponentLogger(componentName).severe(() -> "Keine Stopmethode in der Komponente " + componentName + " gefunden, obwohl eine Startmethode vorhanden ist.");
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -9,10 +9,13 @@ import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
 import org.hbrs.ooka.uebung2.annotations.Port;
 import org.hbrs.ooka.uebung2.annotations.Start;
 import org.hbrs.ooka.uebung2.annotations.Stop;
+import org.hbrs.ooka.uebung2.util.Invokers;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
@@ -21,6 +24,8 @@ import java.net.URLClassLoader;
 import java.util.*;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
 @Getter(AccessLevel.PACKAGE)
 public class Component {
@@ -31,26 +36,71 @@ public class Component {
     protected final File jarFile;
     @NotNull @Getter
     protected final ClassLoader classLoader;
+    /**
+     * Loader of the shared libraries the component loader delegates to, null for the system class loader.
+     */
+    @Nullable
+    private final ClassLoader parentClassLoader;
     @Nullable
     protected Method startMethod;
     @Nullable
     protected Method stopMethod;
+    /**
+     * Resolved once at deploy time, so starting and stopping does not go through reflection.
+     */
+    @Nullable
+    protected Invokers.StaticInvoker startInvoker;
+    @Nullable
+    protected Invokers.StaticInvoker stopInvoker;
 
     @Setter(value = AccessLevel.PACKAGE)
-    private AbstractComponentState componentState;
+    private volatile AbstractComponentState componentState;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean inTransition = new AtomicBoolean();
+
+    /**
+     * Result of the jar scan, available after the first deployment.
+     */
+    @Nullable @Getter @Setter(value = AccessLevel.PACKAGE)
+    private ComponentMetadata metadata;
+    @Nullable @Getter @Setter(value = AccessLevel.PACKAGE)
+    private DeployTimings deployTimings;
 
     public Component(File jarFile) throws MalformedURLException {
+        this(jarFile, null);
+    }
+
+    /**
+     * @param parentClassLoader Loader of shared libraries. Classes found there are not loaded from the component jar
+     * again, so all components share them. Null delegates to the system class loader only.
+     */
+    public Component(File jarFile, @Nullable ClassLoader parentClassLoader) throws MalformedURLException {
         if (!jarFile.getName().endsWith(".jar")){
             throw new IllegalArgumentException(jarFile.getName() + " is not a jar file.");
         }
         this.name = Component.getNameFromJarFile(jarFile);
         this.jarFile = jarFile;
-        this.classLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()});
+        this.parentClassLoader = parentClassLoader;
+        URL[] urls = {jarFile.toURI().toURL()};
+        this.classLoader = parentClassLoader == null ? new URLClassLoader(urls) : new URLClassLoader(urls, parentClassLoader);
         componentState = new ComponentLoaded();
     }
 
+    /**
+     * Creates a new instance of the given component with its own class loader below the same shared libraries.
+     */
     public Component(Component component) throws MalformedURLException {
-        this(component.jarFile);
+        this(component.jarFile, component.parentClassLoader);
+    }
+
+    /**
+     * Creates a replica of a deployed component. It gets its own class loader below the same shared libraries, but
+     * reuses the metadata, so deploying it looks neither at the jar nor at the metadata index.
+     */
+    public static Component replicaOf(Component component) throws MalformedURLException {
+        Component replica = new Component(component);
+        replica.metadata = component.metadata;
+        return replica;
     }
 
     public static String getNameFromJarFile(File jarFile){
@@ -61,26 +111,101 @@ public class Component {
     }
 
     public void deploy(RuntimeEnvironment re) throws Exception {
-        Method[] methods = componentState.deploy(this, re);
-        if (methods != null){
-            startMethod = methods[0];
-            stopMethod = methods[1];
+        deploy(re, re.isLazyActivation());
+    }
+
+    /**
+     * @param lazyPorts Whether the ports are only instantiated on the first request.
+     */
+    public void deploy(RuntimeEnvironment re, boolean lazyPorts) throws Exception {
+        beginTransition();
+        try {
+            Method[] methods = componentState.deploy(this, re, lazyPorts);
+            if (methods != null){
+                startMethod = methods[0];
+                stopMethod = methods[1];
+                startInvoker = Invokers.staticInvoker(startMethod);
+                stopInvoker = Invokers.staticInvoker(stopMethod);
+            }
+            componentState = new ComponentDeployed();
+        } finally {
+            endTransition();
         }
-        componentState = new ComponentDeployed();
+        if (lazyPorts) ComponentLoaded.addLazyPorts(this, re);
     }
 
     public void start() throws Exception {
-        componentState.start(this);
-        componentState = new ComponentStarted();
+        beginTransition();
+        try {
+            componentState.start(this);
+            componentState = new ComponentStarted();
+        } finally {
+            endTransition();
+        }
     }
 
     public void stop() throws Exception{
-        componentState.stop(this);
-        componentState = new ComponentStopped();
+        beginTransition();
+        try {
+            componentState.stop(this);
+            componentState = new ComponentStopped();
+        } finally {
+            endTransition();
+        }
     }
 
     public void delete(){
-        componentState.delete(this);
+        beginTransition();
+        try {
+            componentState.delete(this);
+        } finally {
+            endTransition();
+        }
+    }
+
+    /**
+     * Releases the resources of a component which is not used anymore: the static API fields of its lifecycle class
+     * are cleared and its classloader is closed, which also closes the jar file it opened.
+     * Together with the removal of its ports this lets the component and its classes be garbage collected.
+     * @throws ComponentStateUnsuportedOperationException if the component is started.
+     */
+    public void unload(){
+        if (getState() == ComponentState.STARTED){
+            throw new ComponentStateUnsuportedOperationException("Component " + name + " must be stopped before unloading");
+        }
+        if (startMethod != null && metadata != null){
+            Class<?> lifecycleClass = startMethod.getDeclaringClass();
+            for (String apiFieldName : metadata.apiFieldNames()) {
+                try {
+                    lifecycleClass.getField(apiFieldName).set(null, null);
+                } catch (ReflectiveOperationException e) {
+                    RuntimeEnvironment.getComponentLogger(name).log(Level.WARNING, e, () -> "Das API-Feld " +
+                            apiFieldName + " der Komponente " + name + " konnte nicht zurückgesetzt werden.");
+                }
+            }
+        }
+        if (classLoader instanceof Closeable closeable){
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                RuntimeEnvironment.getComponentLogger(name).log(Level.WARNING, e, () -> "Der Classloader der " +
+                        "Komponente " + name + " konnte nicht geschlossen werden.");
+            }
+        }
+    }
+
+    /**
+     * Only one state transition may run at a time per component. Instead of blocking, concurrent transitions fail,
+     * because a start method may never return.
+     */
+    private void beginTransition(){
+        if (!inTransition.compareAndSet(false, true)){
+            throw new ComponentStateUnsuportedOperationException("Component " + name + " is already in a state transition from state " + getState());
+        }
+    }
+
+    private void endTransition(){
+        inTransition.set(false);
     }
 
     public ComponentState getState(){
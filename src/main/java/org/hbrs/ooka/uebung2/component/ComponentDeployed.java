@@ -1,18 +1,26 @@
 package org.hbrs.ooka.uebung2.component;
 
-import java.lang.reflect.Method;
+import org.hbrs.ooka.uebung2.util.Invokers;
 
 public class ComponentDeployed extends AbstractComponentState {
 
     @Override
     public void start(Component component) throws Exception {
-        Method startMethod = component.getStartMethod();
-        if (startMethod != null) {
-            startMethod.setAccessible(true);
-            startMethod.invoke(null);
+        Invokers.StaticInvoker startInvoker = component.getStartInvoker();
+        if (startInvoker != null) {
+            try {
+                startInvoker.invoke();
+            } catch (Throwable e) {
+                throw Invokers.asException(e);
+            }
         }
     }
 
+    @Override
+    public void delete(Component component) {
+        component.setComponentState(new ComponentDeleted());
+    }
+
     @Override
     public ComponentState getState() {
         return ComponentState.DEPLOYED;
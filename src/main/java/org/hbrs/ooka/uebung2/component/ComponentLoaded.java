@@ -1,100 +1,92 @@
 package org.hbrs.ooka.uebung2.component;
 
-import org.hbrs.ooka.uebung2.annotations.Port;
-import org.hbrs.ooka.uebung2.annotations.Start;
-import org.hbrs.ooka.uebung2.annotations.Stop;
-import org.hbrs.ooka.uebung2.runtimeEnvironment.IRuntimeEnvironmentAPI;
 import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.Enumeration;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-
+import java.util.List;
+
+/**
+ * Deploying runs in three phases: the jar is scanned without loading any class (or taken from the
+ * {@link ComponentMetadataIndex} if unchanged, or from the original of a replica), only the classes found to carry {@code @Port}, {@code @Start} or
+ * {@code @Stop} are loaded and finally the ports are instantiated.
+ * With lazy ports (see {@link RuntimeEnvironment#isLazyActivation()}) the port classes are neither loaded nor instantiated. Instead,
+ * factories are registered which do both on the first request and then activate the component. They are registered by
+ * {@link #addLazyPorts(Component, RuntimeEnvironment)} only once the component is DEPLOYED, because activating it
+ * before would find it in no startable state.
+ */
 public class ComponentLoaded extends AbstractComponentState {
 
-    @Override
-    public @Nullable Method[] deploy(Component component, RuntimeEnvironment re) throws Exception{
-        Enumeration<JarEntry> entryEnumeration = new JarFile(component.getJarFile()).entries();
-        Method[] methods = null;
-
-        while (entryEnumeration.hasMoreElements()) {
-            JarEntry entry = entryEnumeration.nextElement();
-            if (entry.isDirectory() || !entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF") || entry.getName().startsWith("test")) continue;
-            String className = entry.getName().replace("/", ".").substring(0, entry.getName().length() - 6);
-            final Class<?> clazz = component.getClassLoader().loadClass(className);
-
-            // Calculate port class
-            if (clazz.isAnnotationPresent(Port.class)) {
-                re.getApi().addPort(component, clazz.getDeclaredConstructor().newInstance());
-            }
+    /** Below this amount of port classes loading them in parallel costs more than it saves. */
+    private static final int PARALLEL_LOAD_THRESHOLD = 8;
 
-            // Calculate start and stop methods
-            Method[] startAndStopMethods = getStartAndStopMethodsIfPresent(component, clazz);
-            if (startAndStopMethods != null) {
-                if (methods != null) {
-                    RuntimeEnvironment.LOGGER.warning("Mehr als eine Startklasse in der Komponente " + component.getName() +
-                            " gefunden. Belasse zuletzt gefundene Startklasse " + clazz.getName());
-                }
-                else {
-                    methods = startAndStopMethods;
-                    // Set API
-                    Arrays.stream(clazz.getFields()).filter(field -> field.getType().equals(IRuntimeEnvironmentAPI.class)).forEach(field -> {
-                        try {
-                            field.setAccessible(true);
-                            field.set(null, re.getApi());
-                        } catch (IllegalAccessException e) {
-                            throw new RuntimeException(e);
-                        }
-                    });
-                }
-            }
+    @Override
+    public @Nullable Method[] deploy(Component component, RuntimeEnvironment re, boolean lazyPorts) throws Exception{
+        final long scanStart = System.nanoTime();
+        ComponentMetadata metadata = component.getMetadata();
+        // Replicas bring the metadata of their original along
+        if (metadata == null) metadata = re.getMetadataIndex().getOrScan(component.getJarFile(), component.getName(),
+                component.getClassLoader());
+
+        final long loadStart = System.nanoTime();
+        ClassLoader classLoader = component.getClassLoader();
+        List<String> portClassNames = metadata.portClassNames();
+        List<Class<?>> portClasses = lazyPorts ? List.of() : (portClassNames.size() >= PARALLEL_LOAD_THRESHOLD ?
+                portClassNames.parallelStream() : portClassNames.stream())
+                .<Class<?>>map(className -> loadClass(className, classLoader))
+                .toList();
+        Class<?> lifecycleClass = metadata.hasLifecycle() ? loadClass(metadata.lifecycleClassName(), classLoader) : null;
+
+        final long instantiationStart = System.nanoTime();
+        for (Class<?> portClass : portClasses) {
+            re.getApi().addPort(component, portClass.getDeclaredConstructor().newInstance());
         }
-        return methods;
-    }
-
-    private @Nullable Method[] getStartAndStopMethodsIfPresent(Component component, Class<?> clazz){
-        Method startMethod = null;
-        Method stopMethod = null;
-        for (int i = 0; i < clazz.getMethods().length && (startMethod == null || stopMethod == null); i++) {
-            Method method = clazz.getMethods()[i];
 
-            if (method.isAnnotationPresent(Start.class)) {
-                if (startMethod != null) {
-                    RuntimeEnvironment.LOGGER.severe("Mehr als eine Startmethode in der Komponente " + component.getName() + " gefunden.");
-                    return null;
-                }
-
-                startMethod = method;
-            }
-
-            if (method.isAnnotationPresent(Stop.class)) {
-                if (stopMethod != null) {
-                    RuntimeEnvironment.LOGGER.severe("Mehr als eine Stopmethode in der Komponente " + component.getName() + " gefunden.");
-                    return null;
-                }
-
-                stopMethod = method;
+        Method[] methods = null;
+        if (lifecycleClass != null) {
+            methods = new Method[]{lifecycleClass.getMethod(metadata.startMethodName()),
+                    lifecycleClass.getMethod(metadata.stopMethodName())};
+            // Set API
+            for (String apiFieldName : metadata.apiFieldNames()) {
+                lifecycleClass.getField(apiFieldName).set(null, re.getApi());
             }
         }
 
-        if (startMethod == null && stopMethod == null){
-            return null;
-        }
+        DeployTimings timings = new DeployTimings(loadStart - scanStart, instantiationStart - loadStart,
+                System.nanoTime() - instantiationStart);
+        component.setMetadata(metadata);
+        component.setDeployTimings(timings);
+        re.getMetrics().recordDeploy(timings);
+        RuntimeEnvironment.getComponentLogger(component.getName())
+                .info(() -> "Deployment der Komponente " + component.getName() + ": " + timings);
+        return methods;
+    }
 
-        else if (startMethod == null){
-            RuntimeEnvironment.LOGGER.severe("Keine Startmethode in der Komponente " + component.getName() + " gefunden, obwohl eine Stopmethode vorhanden ist.");
-            return null;
+    /**
+     * Registers the factories of the lazy ports of a component which was just deployed with lazy ports.
+     */
+    static void addLazyPorts(Component component, RuntimeEnvironment re) {
+        ClassLoader classLoader = component.getClassLoader();
+        for (String className : component.getMetadata().portClassNames()) {
+            re.getApi().addLazyPort(component, className, () -> {
+                Object port = loadClass(className, classLoader).getDeclaredConstructor().newInstance();
+                re.activateComponent(component);
+                return port;
+            });
         }
+    }
 
-        else if (stopMethod == null){
-            RuntimeEnvironment.LOGGER.severe("Keine Stopmethode in der Komponente " + component.getName() + " gefunden, obwohl eine Startmethode vorhanden ist.");
-            return null;
+    private static Class<?> loadClass(String className, ClassLoader classLoader) {
+        try {
+            return Class.forName(className, true, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Klasse " + className + " konnte nicht geladen werden.", e);
         }
+    }
 
-        return new Method[]{startMethod, stopMethod};
+    @Override
+    public void delete(Component component) {
+        component.setComponentState(new ComponentDeleted());
     }
 
     @Override
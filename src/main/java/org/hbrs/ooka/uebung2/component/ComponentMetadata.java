@@ -0,0 +1,37 @@
+package org.hbrs.ooka.uebung2.component;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Everything the runtime needs to know about a component jar to deploy it, computed without loading any class.
+ *
+ * @param portClassNames Binary names of all classes annotated with {@link org.hbrs.ooka.uebung2.annotations.Port}.
+ * @param statelessPortClassNames The port classes additionally annotated with
+ *                                {@link org.hbrs.ooka.uebung2.annotations.Stateless}.
+ * @param lifecycleClassName Binary name of the class declaring the start and stop method or null if there is none.
+ * @param startMethodName Name of the public static method annotated with {@link org.hbrs.ooka.uebung2.annotations.Start}.
+ * @param stopMethodName Name of the public static method annotated with {@link org.hbrs.ooka.uebung2.annotations.Stop}.
+ * @param apiFieldNames Names of the public static {@link org.hbrs.ooka.uebung2.runtimeEnvironment.IRuntimeEnvironmentAPI}
+ *                      fields in the lifecycle class.
+ */
+public record ComponentMetadata(@NotNull List<String> portClassNames,
+                                @NotNull List<String> statelessPortClassNames,
+                                @Nullable String lifecycleClassName,
+                                @Nullable String startMethodName,
+                                @Nullable String stopMethodName,
+                                @NotNull List<String> apiFieldNames) {
+
+    public boolean hasLifecycle() {
+        return lifecycleClassName != null;
+    }
+
+    /**
+     * @return Returns true if the component has ports and all of them are stateless.
+     */
+    public boolean isStateless() {
+        return !portClassNames.isEmpty() && statelessPortClassNames.containsAll(portClassNames);
+    }
+}
@@ -0,0 +1,191 @@
+package org.hbrs.ooka.uebung2.component;
+
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent index of the {@link ComponentMetadata} of every scanned jar, stored in a compact binary file.
+ * An entry is valid as long as path, size and modification time of the jar match. If only the modification time
+ * differs, the content hash decides, so a touched but unchanged jar is not rescanned either.
+ * Changes are only kept in memory until {@link #flush()} writes them, so a bulk load writes the index file once.
+ * The index is a cache: if it cannot be written, this is logged and the jars are scanned again next time.
+ */
+public class ComponentMetadataIndex {
+    private static final int MAGIC = 0x4F4F4B41; // "OOKA"
+    private static final int VERSION = 3;
+
+    @NotNull
+    private final Path indexFile;
+    private final ConcurrentHashMap<String, IndexEntry> entries = new ConcurrentHashMap<>();
+    /**
+     * Whether {@link #entries} changed since the index file was written.
+     */
+    private volatile boolean dirty = false;
+
+    public ComponentMetadataIndex(@NotNull Path indexFile) {
+        this.indexFile = indexFile;
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                read();
+            } catch (IOException e) {
+                entries.clear();
+                RuntimeEnvironment.LOGGER.log(Level.WARNING, "Der Metadatenindex " + indexFile +
+                        " konnte nicht gelesen werden und wird neu aufgebaut. Siehe folgende Fehlermeldung: ", e);
+            }
+        }
+    }
+
+    /**
+     * @return Returns the indexed metadata of given {@code jar} if the jar did not change since it was indexed, otherwise null.
+     */
+    public @Nullable ComponentMetadata lookup(@NotNull File jar) throws IOException {
+        IndexEntry entry = entries.get(keyOf(jar));
+        if (entry == null || entry.size != jar.length()) return null;
+        if (entry.lastModified == jar.lastModified()) return entry.metadata;
+
+        // Modification time changed, but content might still be the same
+        if (entry.hash != hash(jar)) return null;
+        entries.put(keyOf(jar), new IndexEntry(entry.size, jar.lastModified(), entry.hash, entry.metadata));
+        dirty = true;
+        return entry.metadata;
+    }
+
+    /**
+     * @return Returns the indexed metadata of given {@code jar} or scans it and adds the result to the index.
+     */
+    public @NotNull ComponentMetadata getOrScan(@NotNull File jar, @NotNull String componentName) throws IOException {
+        return getOrScan(jar, componentName, null);
+    }
+
+    /**
+     * @param classLoader Loader of superclasses which are not part of the jar. Null uses the loader of the runtime.
+     * @return Returns the indexed metadata of given {@code jar} or scans it and adds the result to the index.
+     */
+    public @NotNull ComponentMetadata getOrScan(@NotNull File jar, @NotNull String componentName,
+                                                @Nullable ClassLoader classLoader) throws IOException {
+        ComponentMetadata metadata = lookup(jar);
+        if (metadata != null) return metadata;
+
+        long size = jar.length();
+        long lastModified = jar.lastModified();
+        long hash = hash(jar);
+        metadata = ClassFileScanner.scan(jar, componentName, classLoader);
+        entries.put(keyOf(jar), new IndexEntry(size, lastModified, hash, metadata));
+        dirty = true;
+        return metadata;
+    }
+
+    /**
+     * Drops the entries of jars which do not exist anymore and writes the index file, if anything changed since the
+     * last call. A failure is logged only, the entries are written again with the next call.
+     */
+    public synchronized void flush() {
+        if (entries.keySet().removeIf(key -> !new File(key).isFile())) dirty = true;
+        if (!dirty) return;
+        dirty = false;
+        try {
+            save();
+        } catch (IOException e) {
+            dirty = true;
+            RuntimeEnvironment.LOGGER.log(Level.WARNING, "Der Metadatenindex " + indexFile +
+                    " konnte nicht geschrieben werden. Siehe folgende Fehlermeldung: ", e);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private static String keyOf(File jar) {
+        return jar.getAbsolutePath();
+    }
+
+    private static long hash(File jar) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(jar)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) crc.update(buffer, 0, read);
+        }
+        return crc.getValue();
+    }
+
+    private void read() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Unbekanntes Indexformat.");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                long hash = in.readLong();
+                List<String> ports = readStrings(in);
+                List<String> statelessPorts = readStrings(in);
+                String lifecycleClass = in.readBoolean() ? in.readUTF() : null;
+                String startMethod = lifecycleClass != null ? in.readUTF() : null;
+                String stopMethod = lifecycleClass != null ? in.readUTF() : null;
+                List<String> apiFields = readStrings(in);
+                entries.put(key, new IndexEntry(size, lastModified, hash,
+                        new ComponentMetadata(ports, statelessPorts, lifecycleClass, startMethod, stopMethod, apiFields)));
+            }
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file first and moves it over the old one, so readers never see a half written index.
+     */
+    private void save() throws IOException {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            List<Map.Entry<String, IndexEntry>> snapshot = new ArrayList<>(entries.entrySet());
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, IndexEntry> mapEntry : snapshot) {
+                IndexEntry entry = mapEntry.getValue();
+                ComponentMetadata metadata = entry.metadata;
+                out.writeUTF(mapEntry.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.hash);
+                writeStrings(out, metadata.portClassNames());
+                writeStrings(out, metadata.statelessPortClassNames());
+                out.writeBoolean(metadata.hasLifecycle());
+                if (metadata.hasLifecycle()) {
+                    out.writeUTF(metadata.lifecycleClassName());
+                    out.writeUTF(metadata.startMethodName());
+                    out.writeUTF(metadata.stopMethodName());
+                }
+                writeStrings(out, metadata.apiFieldNames());
+            }
+        }
+        Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) strings.add(in.readUTF());
+        return List.copyOf(strings);
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeShort(strings.size());
+        for (String string : strings) out.writeUTF(string);
+    }
+
+    private record IndexEntry(long size, long lastModified, long hash, ComponentMetadata metadata) {
+    }
+}
@@ -1,15 +1,18 @@
 package org.hbrs.ooka.uebung2.component;
 
-import java.lang.reflect.Method;
+import org.hbrs.ooka.uebung2.util.Invokers;
 
 public class ComponentStarted extends AbstractComponentState {
 
     @Override
     public void stop(Component component) throws Exception {
-        Method stopMethod = component.getStopMethod();
-        if (stopMethod != null) {
-            stopMethod.setAccessible(true);
-            stopMethod.invoke(null);
+        Invokers.StaticInvoker stopInvoker = component.getStopInvoker();
+        if (stopInvoker != null) {
+            try {
+                stopInvoker.invoke();
+            } catch (Throwable e) {
+                throw Invokers.asException(e);
+            }
         }
     }
 
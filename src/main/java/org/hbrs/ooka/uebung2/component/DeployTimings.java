@@ -0,0 +1,17 @@
+package org.hbrs.ooka.uebung2.component;
+
+/**
+ * Duration of each phase of the last deployment of a component in nanoseconds.
+ *
+ * @param scanNanos Reading the jar index and scanning the class bytes for annotations.
+ * @param loadNanos Loading and initializing the candidate classes.
+ * @param instantiationNanos Creating the port instances and injecting the API.
+ */
+public record DeployTimings(long scanNanos, long loadNanos, long instantiationNanos) {
+
+    @Override
+    public String toString() {
+        return String.format("Scan %.2f ms, Laden %.2f ms, Instanziierung %.2f ms",
+                scanNanos / 1e6, loadNanos / 1e6, instantiationNanos / 1e6);
+    }
+}
@@ -0,0 +1,25 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Limits of the calls of one port type made via {@link IRuntimeEnvironmentAPI#invokeAsync(Class, PortCall)}.
+ *
+ * @param maxConcurrency Calls running at the same time. Further calls wait in the queue.
+ * @param maxQueueDepth Calls waiting at the same time. Further calls are rejected.
+ * @param timeout Time after which a call fails with a {@link java.util.concurrent.TimeoutException}, counted from
+ *                submitting it. A running call is interrupted then. Null for no timeout.
+ */
+public record AsyncLimits(int maxConcurrency, int maxQueueDepth, @Nullable Duration timeout) {
+    public static final AsyncLimits DEFAULT = new AsyncLimits(64, 1024, null);
+
+    public AsyncLimits {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("Max concurrency must be at least 1 but was " + maxConcurrency);
+        if (maxQueueDepth < 0) throw new IllegalArgumentException("Max queue depth must not be negative but was " + maxQueueDepth);
+        if (timeout != null && (timeout.isNegative() || timeout.isZero())) {
+            throw new IllegalArgumentException("Timeout must be positive but was " + timeout);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+/**
+ * Bounds of the adaptive concurrency limit of a port type, see
+ * {@link RuntimeEnvironmentAPI#setBulkhead(String, BulkheadLimits)}.
+ *
+ * @param initialLimit Calls allowed at the same time before any latency was observed.
+ * @param minLimit The limit never drops below, so a slow port type still gets calls to measure.
+ * @param maxLimit The limit never grows above.
+ */
+public record BulkheadLimits(int initialLimit, int minLimit, int maxLimit) {
+    public static final BulkheadLimits DEFAULT = new BulkheadLimits(20, 1, 200);
+
+    public BulkheadLimits {
+        if (minLimit < 1) throw new IllegalArgumentException("Min limit must be at least 1 but was " + minLimit);
+        if (maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy " + minLimit + " <= " + initialLimit + " <= " +
+                    maxLimit);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Watches the component directory with a {@link WatchService} on its own thread. Events are coalesced per jar file:
+ * a file is reported once no further event for it arrived within the quiet period and its size and modification time
+ * did not change during that period, so a jar written in several steps or still being copied triggers a single
+ * notification after it is complete. Whether a reported file was added, modified or removed is up to the listener.
+ */
+public class ComponentDirectoryWatcher implements Closeable {
+    private final Path directory;
+    private final WatchService watchService;
+    private final Duration quietPeriod;
+    private final Consumer<Set<Path>> listener;
+    private final Thread thread;
+    /**
+     * Changed jar files which are not reported yet. Only accessed by the watcher thread.
+     */
+    private final Map<Path, PendingFile> pending = new HashMap<>();
+
+    private static final class PendingFile {
+        long lastChangeNanos;
+        long size;
+        long lastModified;
+
+        PendingFile(long now, File file) {
+            lastChangeNanos = now;
+            size = file.length();
+            lastModified = file.lastModified();
+        }
+
+        /**
+         * @return Returns true if the file still changes, e.g. because it is being copied without further events.
+         */
+        boolean updateIfChanged(long now, File file) {
+            if (file.length() == size && file.lastModified() == lastModified) return false;
+            lastChangeNanos = now;
+            size = file.length();
+            lastModified = file.lastModified();
+            return true;
+        }
+    }
+
+    /**
+     * @param listener Is called on the watcher thread with the jar files which changed.
+     */
+    public ComponentDirectoryWatcher(@NotNull Path directory, @NotNull Duration quietPeriod,
+                                     @NotNull Consumer<Set<Path>> listener) throws IOException {
+        this.directory = directory;
+        this.quietPeriod = quietPeriod;
+        this.listener = listener;
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+
+        this.thread = new Thread(this::watch, "Laufzeitumgebung-Verzeichnis");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = pending.isEmpty() ? watchService.take() :
+                        watchService.poll(Math.max(1, nanosUntilNextDue() / 1_000_000), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    collect(key);
+                    key.reset();
+                }
+                Set<Path> due = takeDue();
+                if (!due.isEmpty()) notifyListener(due);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void collect(WatchKey key) {
+        long now = System.nanoTime();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost, so every jar in the directory is checked
+                File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(".jar"));
+                if (files != null) for (File file : files) pending.put(file.toPath(), new PendingFile(now, file));
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (file.getFileName().toString().endsWith(".jar")) pending.put(file, new PendingFile(now, file.toFile()));
+        }
+    }
+
+    private long nanosUntilNextDue() {
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+        for (PendingFile file : pending.values()) {
+            next = Math.min(next, file.lastChangeNanos + quietPeriod.toNanos() - now);
+        }
+        return Math.max(0, next);
+    }
+
+    private Set<Path> takeDue() {
+        long now = System.nanoTime();
+        Set<Path> due = new LinkedHashSet<>();
+        for (Iterator<Map.Entry<Path, PendingFile>> it = pending.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, PendingFile> entry = it.next();
+            if (now - entry.getValue().lastChangeNanos < quietPeriod.toNanos()) continue;
+            if (entry.getValue().updateIfChanged(now, entry.getKey().toFile())) continue;
+            due.add(entry.getKey());
+            it.remove();
+        }
+        return due;
+    }
+
+    private void notifyListener(Set<Path> files) {
+        try {
+            listener.accept(files);
+        } catch (RuntimeException e) {
+            RuntimeEnvironment.LOGGER.log(Level.SEVERE, e, () -> "Die Änderungen an " + files +
+                    " konnten nicht verarbeitet werden. Siehe folgende Fehlermeldung: ");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,137 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import lombok.Getter;
+import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.util.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the lifecycle methods of components on their own named threads. Virtual threads are used if the JVM offers
+ * them (JDK 21, or JDK 19/20 with {@code --enable-preview}), otherwise platform threads. Like every virtual thread,
+ * the virtual ones do not keep the JVM alive; the platform threads do, so a running start method keeps the JVM alive.
+ * Components are tracked by identity, because their hash code changes with their state.
+ * Every transition is reported through a {@link CompletableFuture} which completes with the latency of the
+ * transition or exceptionally with the exception thrown by the component.
+ */
+public class ComponentExecutor {
+    @Nullable
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = lookupVirtualThreadFactory();
+
+    @NotNull
+    private final ThreadFactory threadFactory;
+    @Getter
+    private final boolean virtual;
+    private final Map<Component, Thread> activeThreads = Collections.synchronizedMap(new IdentityHashMap<>());
+    /**
+     * Latencies of all successful starts and stops, measured like the durations the futures complete with.
+     */
+    @Getter
+    private final LatencyHistogram startLatencies = new LatencyHistogram();
+    @Getter
+    private final LatencyHistogram stopLatencies = new LatencyHistogram();
+
+    public ComponentExecutor() {
+        this(true);
+    }
+
+    /**
+     * @param preferVirtualThreads Uses virtual threads if true and the JVM supports them.
+     */
+    public ComponentExecutor(boolean preferVirtualThreads) {
+        this.virtual = preferVirtualThreads && VIRTUAL_THREAD_FACTORY != null;
+        this.threadFactory = virtual ? VIRTUAL_THREAD_FACTORY : Thread::new;
+    }
+
+    /**
+     * @return Returns a factory for virtual threads if the JVM offers them, otherwise for daemon platform threads.
+     */
+    static ThreadFactory defaultThreadFactory() {
+        return VIRTUAL_THREAD_FACTORY != null ? VIRTUAL_THREAD_FACTORY : ComponentExecutor::newDaemonThread;
+    }
+
+    private static Thread newDaemonThread(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Calls {@link Component#start()} on a new thread named {@code threadName}.
+     */
+    public CompletableFuture<Duration> start(@NotNull Component component, @NotNull String threadName) {
+        return run(component, threadName, component::start, startLatencies);
+    }
+
+    /**
+     * Calls {@link Component#stop()} on a new thread named {@code threadName}.
+     */
+    public CompletableFuture<Duration> stop(@NotNull Component component, @NotNull String threadName) {
+        return run(component, threadName, component::stop, stopLatencies);
+    }
+
+    /**
+     * @return Returns the thread currently executing a lifecycle method of given {@code component} or null.
+     * A component whose start method does not return keeps its thread.
+     */
+    public @Nullable Thread getActiveThread(@NotNull Component component) {
+        return activeThreads.get(component);
+    }
+
+    /**
+     * @return Returns a snapshot of all components currently executing a lifecycle method and their threads.
+     */
+    public Map<Component, Thread> getActiveThreads() {
+        synchronized (activeThreads) {
+            return Collections.unmodifiableMap(new IdentityHashMap<>(activeThreads));
+        }
+    }
+
+    private CompletableFuture<Duration> run(Component component, String threadName, Transition transition,
+                                            LatencyHistogram latencies) {
+        CompletableFuture<Duration> future = new CompletableFuture<>();
+        final long submitted = System.nanoTime();
+        Thread thread = threadFactory.newThread(() -> {
+            Throwable failure = null;
+            try {
+                transition.run();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            // Untrack before completing, so callers of the future see a consistent state
+            activeThreads.remove(component, Thread.currentThread());
+            if (failure == null) {
+                long latency = System.nanoTime() - submitted;
+                latencies.record(latency);
+                future.complete(Duration.ofNanos(latency));
+            }
+            else future.completeExceptionally(failure);
+        });
+        thread.setName(threadName);
+        activeThreads.put(component, thread);
+        thread.start();
+        return future;
+    }
+
+    private static @Nullable ThreadFactory lookupVirtualThreadFactory() {
+        try {
+            // Accessed reflectively so the runtime still works on JVMs without virtual threads
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Transition {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,103 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.hbrs.ooka.uebung2.component.Component;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe registry of all components of a runtime environment. IDs are assigned in ascending order and never
+ * reused or shifted, so an ID stays valid until its component is removed. Lookups by ID and name are O(1).
+ */
+public class ComponentRegistry {
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final ConcurrentHashMap<Integer, Component> componentsById = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<Integer>> idsByName = new ConcurrentHashMap<>();
+
+    /**
+     * @return Returns the ID assigned to given {@code component}.
+     */
+    public int register(@NotNull Component component) {
+        int id = nextId.getAndIncrement();
+        componentsById.put(id, component);
+        idsByName.compute(component.getName(), (name, ids) -> {
+            if (ids == null) ids = ConcurrentHashMap.newKeySet();
+            ids.add(id);
+            return ids;
+        });
+        return id;
+    }
+
+    public @Nullable Component get(int id) {
+        return componentsById.get(id);
+    }
+
+    /**
+     * @return Returns the IDs of all components with given {@code name} in ascending order.
+     */
+    public SortedSet<Integer> getIdsByName(@NotNull String name) {
+        Set<Integer> ids = idsByName.get(name);
+        return ids == null ? Collections.emptySortedSet() : Collections.unmodifiableSortedSet(new TreeSet<>(ids));
+    }
+
+    /**
+     * @return Returns the ID of given {@code component} or -1 if it is not registered.
+     */
+    public int getId(@NotNull Component component) {
+        for (int id : getIdsByName(component.getName())) {
+            if (componentsById.get(id) == component) return id;
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces the component registered under {@code id} by {@code replacement}, keeping the ID.
+     * @return Returns false if {@code id} is not registered for {@code expected} (anymore).
+     */
+    public boolean replace(int id, @NotNull Component expected, @NotNull Component replacement) {
+        if (!expected.getName().equals(replacement.getName())) {
+            throw new IllegalArgumentException("Replacement " + replacement.getName() + " must have the name " + expected.getName());
+        }
+        return componentsById.replace(id, expected, replacement);
+    }
+
+    public boolean containsName(@NotNull String name) {
+        return idsByName.containsKey(name);
+    }
+
+    /**
+     * @return Returns the removed component or null if no component with given {@code id} exists.
+     */
+    public @Nullable Component remove(int id) {
+        Component component = componentsById.remove(id);
+        if (component == null) return null;
+        idsByName.computeIfPresent(component.getName(), (name, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+        return component;
+    }
+
+    /**
+     * @return Returns a snapshot of all components ordered by ID. Later changes of the registry are not reflected.
+     */
+    public SortedMap<Integer, Component> snapshot() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(componentsById));
+    }
+
+    public int size() {
+        return componentsById.size();
+    }
+
+    public boolean isEmpty() {
+        return componentsById.isEmpty();
+    }
+
+    public void clear() {
+        componentsById.clear();
+        idsByName.clear();
+    }
+}
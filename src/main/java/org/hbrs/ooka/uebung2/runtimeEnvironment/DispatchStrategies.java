@@ -0,0 +1,81 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Built-in {@link DispatchStrategy} implementations. Every factory method returns a new strategy object,
+ * because strategies must not be shared between port types.
+ */
+public final class DispatchStrategies {
+
+    private DispatchStrategies() {
+    }
+
+    /**
+     * Rotates through all instances regardless of their load. This is the default strategy.
+     */
+    public static DispatchStrategy roundRobin() {
+        AtomicInteger cursor = new AtomicInteger();
+        // floorMod keeps the index valid after the cursor overflows
+        return instances -> instances[Math.floorMod(cursor.getAndIncrement(), instances.length)];
+    }
+
+    /**
+     * Chooses the instance with the fewest running calls. Ties are broken by a rotating start position,
+     * so idle instances are used evenly.
+     */
+    public static DispatchStrategy leastInFlight() {
+        AtomicInteger cursor = new AtomicInteger();
+        return instances -> {
+            int start = Math.floorMod(cursor.getAndIncrement(), instances.length);
+            PortInstance best = instances[start];
+            int bestLoad = best.getInFlight();
+            for (int i = 1; i < instances.length && bestLoad > 0; i++) {
+                PortInstance candidate = instances[(start + i) % instances.length];
+                int load = candidate.getInFlight();
+                if (load < bestLoad) {
+                    best = candidate;
+                    bestLoad = load;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Samples two random instances and chooses the one with fewer running calls. Nearly as good as
+     * {@link #leastInFlight()} but with constant cost for many instances.
+     */
+    public static DispatchStrategy powerOfTwoChoices() {
+        return instances -> {
+            if (instances.length == 1) return instances[0];
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(instances.length);
+            int second = random.nextInt(instances.length - 1);
+            if (second >= first) second++;
+            PortInstance a = instances[first];
+            PortInstance b = instances[second];
+            return b.getInFlight() < a.getInFlight() ? b : a;
+        };
+    }
+
+    /**
+     * Rotates through all instances, each getting a share of calls corresponding to its {@link PortInstance#getWeight()}.
+     */
+    public static DispatchStrategy weightedRoundRobin() {
+        AtomicInteger cursor = new AtomicInteger();
+        return instances -> {
+            int totalWeight = 0;
+            for (PortInstance instance : instances) totalWeight += instance.getWeight();
+
+            int position = Math.floorMod(cursor.getAndIncrement(), totalWeight);
+            for (PortInstance instance : instances) {
+                position -= instance.getWeight();
+                if (position < 0) return instance;
+            }
+            // Weights changed concurrently, fall back to the last instance
+            return instances[instances.length - 1];
+        };
+    }
+}
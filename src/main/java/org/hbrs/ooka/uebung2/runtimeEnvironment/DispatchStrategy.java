@@ -0,0 +1,18 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+/**
+ * Decides which instance of a port type serves the next call. One strategy object is bound to exactly one port type,
+ * so implementations may keep per-type state like cursors. {@link #select(PortInstance[])} is called concurrently
+ * on the hot path and should neither lock nor allocate.
+ *
+ * @see DispatchStrategies
+ */
+@FunctionalInterface
+public interface DispatchStrategy {
+
+    /**
+     * @param instances Current instances of the port type. Never empty and must not be modified.
+     * @return Returns the instance which should serve the call.
+     */
+    PortInstance select(PortInstance[] instances);
+}
@@ -1,5 +1,28 @@
 package org.hbrs.ooka.uebung2.runtimeEnvironment;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface IRuntimeEnvironmentAPI {
-    Object getPort(Class<?> portClass);
+    /**
+     * If {@code portType} is an interface, returns a proxy implementing it which chooses an instance of a port
+     * implementing the interface on every method call, so a client may keep the proxy and still gets load-balanced.
+     * Otherwise returns the instance of given port class chosen now.
+     */
+    <T> T getPort(Class<T> portType);
+
+    /**
+     * Executes given {@code call} on an instance of given {@code portClass} chosen by the port type's
+     * {@link DispatchStrategy}. While the call is running, it counts as in flight on that instance.
+     * @return Returns the result of given {@code call}.
+     */
+    <P, R> R invoke(Class<P> portClass, PortCall<P, R> call) throws Exception;
+
+    /**
+     * Like {@link #invoke(Class, PortCall)}, but runs the call on a thread of its own within the {@link AsyncLimits}
+     * of the port type, so a slow port type neither blocks the caller nor uses up the threads of other port types.
+     * @return Returns a future of the result of given {@code call}. It fails with a
+     * {@link java.util.concurrent.RejectedExecutionException} if the queue of the port type is full, and with a
+     * {@link java.util.concurrent.TimeoutException} if the call took longer than the timeout of the port type.
+     */
+    <P, R> CompletableFuture<R> invokeAsync(Class<P> portClass, PortCall<P, R> call);
 }
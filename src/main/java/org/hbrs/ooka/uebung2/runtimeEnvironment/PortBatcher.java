@@ -0,0 +1,152 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Collects the calls of one {@link org.hbrs.ooka.uebung2.annotations.Batchable} method of a port proxy and delivers
+ * them as one call of its bulk method. Batches are delivered by {@code workers}, a full one as soon as it is complete,
+ * an expired one after the timer of {@code scheduler} fired. So no caller runs the bulk call itself, and asynchronous
+ * methods never block. A bulk call taking longer than the timeout fails the calls of its batch, so their callers do
+ * not wait forever.
+ */
+final class PortBatcher {
+    static final MethodHandle SUBMIT;
+    static final MethodHandle AWAIT;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            SUBMIT = lookup.findVirtual(PortBatcher.class, "submit",
+                    MethodType.methodType(CompletableFuture.class, Object.class));
+            AWAIT = lookup.findStatic(PortBatcher.class, "await", MethodType.methodType(Object.class, CompletableFuture.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String name;
+    /**
+     * The bulk method of the proxy, i.e. dispatched like every other call.
+     */
+    private final MethodHandle bulk;
+    private final boolean resultsExpected;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long timeoutNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Executor workers;
+
+    private List<Object> arguments = new ArrayList<>();
+    private List<CompletableFuture<Object>> futures = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    /**
+     * @param bulk Handle of type {@code (List) -> Object}.
+     * @param resultsExpected Whether the bulk method returns one result per argument.
+     */
+    PortBatcher(@NotNull String name, @NotNull MethodHandle bulk, boolean resultsExpected, int maxBatchSize,
+                long maxDelayNanos, long timeoutNanos, @NotNull ScheduledExecutorService scheduler,
+                @NotNull Executor workers) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("Max batch size must be at least 1 but was " + maxBatchSize);
+        if (timeoutNanos < 1) throw new IllegalArgumentException("Timeout must be positive but was " + timeoutNanos);
+        this.name = name;
+        this.bulk = bulk;
+        this.resultsExpected = resultsExpected;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelayNanos;
+        this.timeoutNanos = timeoutNanos;
+        this.scheduler = scheduler;
+        this.workers = workers;
+    }
+
+    CompletableFuture<Object> submit(Object argument) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        List<Object> batchArguments;
+        List<CompletableFuture<Object>> batchFutures;
+        synchronized (this) {
+            arguments.add(argument);
+            futures.add(future);
+            if (arguments.size() < maxBatchSize) {
+                if (arguments.size() == 1) timer = scheduler.schedule(this::deliverExpired, maxDelayNanos, TimeUnit.NANOSECONDS);
+                return future;
+            }
+            // A batch of one call is full without ever waiting
+            if (timer != null) timer.cancel(false);
+            timer = null;
+            batchArguments = arguments;
+            batchFutures = futures;
+            arguments = new ArrayList<>(maxBatchSize);
+            futures = new ArrayList<>(maxBatchSize);
+        }
+        workers.execute(() -> deliver(batchArguments, batchFutures));
+        return future;
+    }
+
+    private void deliverExpired() {
+        List<Object> batchArguments;
+        List<CompletableFuture<Object>> batchFutures;
+        synchronized (this) {
+            // Delivered as full batch in the meantime
+            if (arguments.isEmpty()) return;
+            batchArguments = arguments;
+            batchFutures = futures;
+            arguments = new ArrayList<>(maxBatchSize);
+            futures = new ArrayList<>(maxBatchSize);
+        }
+        workers.execute(() -> deliver(batchArguments, batchFutures));
+    }
+
+    private void deliver(List<Object> batchArguments, List<CompletableFuture<Object>> batchFutures) {
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            TimeoutException e = new TimeoutException("Die Sammelmethode " + name + " hat nicht innerhalb von " +
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms geantwortet.");
+            for (CompletableFuture<Object> future : batchFutures) future.completeExceptionally(e);
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+        Object results;
+        try {
+            results = (Object) bulk.invokeExact(batchArguments);
+        } catch (Throwable e) {
+            for (CompletableFuture<Object> future : batchFutures) future.completeExceptionally(e);
+            return;
+        } finally {
+            timeout.cancel(false);
+        }
+        if (!resultsExpected) {
+            for (CompletableFuture<Object> future : batchFutures) future.complete(null);
+            return;
+        }
+        if (!(results instanceof List<?> list) || list.size() != batchFutures.size()) {
+            IllegalStateException e = new IllegalStateException("Die Sammelmethode " + name + " hat für " +
+                    batchFutures.size() + " Aufrufe nicht ebenso viele Ergebnisse geliefert.");
+            for (CompletableFuture<Object> future : batchFutures) future.completeExceptionally(e);
+            return;
+        }
+        for (int i = 0; i < list.size(); i++) batchFutures.get(i).complete(list.get(i));
+    }
+
+    /**
+     * Waits for the result of a synchronous call and throws the exception of the bulk call unwrapped.
+     */
+    private static Object await(CompletableFuture<Object> future) throws Throwable {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Checked, but not declared by the batchable method
+            if (e.getCause() instanceof TimeoutException) throw new IllegalStateException(e.getCause().getMessage(), e.getCause());
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the calls running on one port type at the same time, so a misbehaving port cannot tie up every calling
+ * thread. Calls beyond the limit are not queued but rejected right away.
+ * The limit adapts like TCP Vegas: the latency of a call compared to the smallest one seen estimates how many calls
+ * are queueing inside the port. Few queueing calls raise the limit by one, many lower it by one and a failed call
+ * lowers it multiplicatively like AIMD. The smallest latency is measured anew every {@value #PROBE_INTERVAL} calls,
+ * so a port which became slower for good does not keep the limit at its minimum.
+ */
+final class PortBulkhead {
+    private static final int ALPHA = 3;
+    private static final int BETA = 6;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final long PROBE_INTERVAL = 1000;
+
+    private final String typeName;
+    private final BulkheadLimits limits;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong minLatencyNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong samples = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    PortBulkhead(@NotNull String typeName, @NotNull BulkheadLimits limits) {
+        this.typeName = typeName;
+        this.limits = limits;
+        this.limit = new AtomicInteger(limits.initialLimit());
+    }
+
+    int getLimit() {
+        return limit.get();
+    }
+
+    long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @throws PortRejectedException if the limit is reached.
+     */
+    void acquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                rejected.increment();
+                throw new PortRejectedException("Die Obergrenze von " + current + " gleichzeitigen Aufrufen des Ports " +
+                        typeName + " ist erreicht.");
+            }
+            if (inFlight.compareAndSet(current, current + 1)) return;
+        }
+    }
+
+    /**
+     * @param latencyNanos Duration of the call or 0 if it was not measured, then the limit stays as it is.
+     */
+    void release(long latencyNanos, boolean failed) {
+        // A bulkhead set while calls were running gets releases it did not acquire
+        int running = inFlight.getAndUpdate(current -> Math.max(0, current - 1));
+        if (latencyNanos <= 0) return;
+        if (failed) {
+            limit.updateAndGet(current -> Math.max(limits.minLimit(), (int) (current * BACKOFF_RATIO)));
+            return;
+        }
+
+        long minLatency;
+        if (samples.incrementAndGet() % PROBE_INTERVAL == 0) {
+            minLatencyNanos.set(latencyNanos);
+            minLatency = latencyNanos;
+        } else {
+            minLatency = minLatencyNanos.accumulateAndGet(latencyNanos, Math::min);
+        }
+        limit.updateAndGet(current -> {
+            int queued = (int) Math.ceil(current * (1 - (double) minLatency / latencyNanos));
+            // Without load on the port its latency tells nothing about a higher limit
+            if (queued <= ALPHA && running * 2 >= current) return Math.min(limits.maxLimit(), current + 1);
+            if (queued >= BETA) return Math.max(limits.minLimit(), current - 1);
+            return current;
+        });
+    }
+}
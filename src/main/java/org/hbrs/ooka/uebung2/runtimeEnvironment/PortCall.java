@@ -0,0 +1,12 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+/**
+ * A single call on a port instance, executed via {@link IRuntimeEnvironmentAPI#invoke(Class, PortCall)}.
+ *
+ * @param <P> Type of the port.
+ * @param <R> Type of the result.
+ */
+@FunctionalInterface
+public interface PortCall<P, R> {
+    R call(P port) throws Exception;
+}
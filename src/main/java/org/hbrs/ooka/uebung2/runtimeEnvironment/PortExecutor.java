@@ -0,0 +1,173 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the asynchronous calls of one port type within its {@link AsyncLimits}. A call gets a thread of its own from
+ * the thread factory when a slot below the concurrency limit is free; a thread keeps taking queued calls until the
+ * queue is empty. No thread exists while there are no calls, so idle port types cost nothing.
+ */
+final class PortExecutor {
+    private final String typeName;
+    private final ThreadFactory threadFactory;
+    private volatile AsyncLimits limits = AsyncLimits.DEFAULT;
+
+    private final Queue<Task<?>> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * Calls submitted and not finished yet, the queued ones included.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    PortExecutor(@NotNull String typeName, @NotNull ThreadFactory threadFactory) {
+        this.typeName = typeName;
+        this.threadFactory = threadFactory;
+    }
+
+    void setLimits(@NotNull AsyncLimits limits) {
+        this.limits = limits;
+        // A raised limit lets queued calls start right away
+        startWorkers();
+    }
+
+    AsyncLimits getLimits() {
+        return limits;
+    }
+
+    int getQueueDepth() {
+        return queued.get();
+    }
+
+    long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    <R> CompletableFuture<R> submit(@NotNull Callable<R> call) {
+        AsyncLimits current = limits;
+        CompletableFuture<R> future = new CompletableFuture<>();
+        if (pending.incrementAndGet() > current.maxConcurrency() + current.maxQueueDepth()) {
+            pending.decrementAndGet();
+            rejected.increment();
+            future.completeExceptionally(new RejectedExecutionException("Die Warteschlange des Ports " + typeName +
+                    " ist voll (" + current.maxQueueDepth() + " Aufrufe)."));
+            return future;
+        }
+
+        Task<R> task = new Task<>(future, call);
+        if (current.timeout() != null) {
+            future.orTimeout(current.timeout().toNanos(), TimeUnit.NANOSECONDS).whenComplete((result, e) -> {
+                if (e instanceof TimeoutException) {
+                    timedOut.increment();
+                    task.interrupt();
+                }
+            });
+        }
+        queued.incrementAndGet();
+        queue.add(task);
+        startWorkers();
+        return future;
+    }
+
+    private void startWorkers() {
+        while (!queue.isEmpty()) {
+            int current = running.get();
+            if (current >= limits.maxConcurrency()) return;
+            if (!running.compareAndSet(current, current + 1)) continue;
+            Thread thread = threadFactory.newThread(this::work);
+            thread.setName("Port-" + typeName + "-async");
+            thread.start();
+        }
+    }
+
+    private void work() {
+        while (true) {
+            Task<?> task;
+            while (running.get() <= limits.maxConcurrency() && (task = queue.poll()) != null) {
+                queued.decrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+            running.decrementAndGet();
+            // A call queued after the last poll but before the decrement would otherwise wait for the next submit
+            if (queue.isEmpty() || running.get() >= limits.maxConcurrency()) return;
+            if (!reclaim()) return;
+        }
+    }
+
+    private boolean reclaim() {
+        while (true) {
+            int current = running.get();
+            if (current >= limits.maxConcurrency()) return false;
+            if (running.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /**
+     * A queued call. Its state decides whether a timeout may still interrupt the worker: only a task that is
+     * {@code RUNNING} is interrupted, and a worker whose call finished waits until an interrupt in progress was
+     * delivered, so it can clear it before taking the next call.
+     */
+    private static final class Task<R> {
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int INTERRUPTING = 2;
+        private static final int CANCELLED = 3;
+        private static final int DONE = 4;
+
+        private final CompletableFuture<R> future;
+        private final Callable<R> call;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private volatile Thread thread;
+
+        Task(CompletableFuture<R> future, Callable<R> call) {
+            this.future = future;
+            this.call = call;
+        }
+
+        void run() {
+            thread = Thread.currentThread();
+            // Timed out or cancelled while queued
+            if (future.isDone() || !state.compareAndSet(NEW, RUNNING)) return;
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    while (state.get() == INTERRUPTING) Thread.onSpinWait();
+                }
+                thread = null;
+                // An interrupt after the call finished must not hit the next call on this thread
+                Thread.interrupted();
+            }
+        }
+
+        void interrupt() {
+            if (state.compareAndSet(NEW, CANCELLED)) return;
+            if (!state.compareAndSet(RUNNING, INTERRUPTING)) return;
+            thread.interrupt();
+            state.set(CANCELLED);
+        }
+    }
+}
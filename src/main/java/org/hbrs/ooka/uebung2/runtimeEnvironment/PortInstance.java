@@ -0,0 +1,170 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import lombok.Getter;
+import org.hbrs.ooka.uebung2.component.Component;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One registered instance of a port type. Besides the port object it carries the live load information
+ * a {@link DispatchStrategy} bases its decision on.
+ * A lazily registered instance is only a descriptor until the port object is requested for the first time.
+ */
+public final class PortInstance {
+    private static final long ACCESS_GRANULARITY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Getter
+    private final Component component;
+    @Nullable
+    private volatile Object instance;
+    @Nullable
+    private final Callable<Object> factory;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    @Getter
+    private volatile int weight = 1;
+    /**
+     * {@link System#nanoTime()} of the last request, only tracked while idle tracking is enabled.
+     */
+    private volatile long lastAccessNanos = System.nanoTime();
+    /**
+     * State of the circuit breaker, see {@link PortInterceptors#circuitBreaker(int, java.time.Duration)}.
+     */
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean circuitOpen;
+    private volatile long circuitOpenUntilNanos;
+    /**
+     * Slot this instance is registered in, set by the slot before the instance becomes visible to dispatching.
+     */
+    @Nullable
+    private PortSlot slot;
+    /**
+     * Class of a lazily registered port, loaded without initialization by {@link #isInstanceOf(Class)}.
+     */
+    @Nullable
+    private volatile Class<?> lazyClass;
+
+    PortInstance(Component component, Object instance) {
+        this.component = component;
+        this.instance = instance;
+        this.factory = null;
+    }
+
+    PortInstance(Component component, Callable<Object> factory) {
+        this.component = component;
+        this.factory = factory;
+    }
+
+    /**
+     * @return Returns the port object. A lazily registered port is created by the first call.
+     * @throws IllegalStateException if the port could not be created. The next call tries again.
+     */
+    public Object getInstance() {
+        Object current = instance;
+        return current != null ? current : activate();
+    }
+
+    /**
+     * @return Returns whether the port object has been created.
+     */
+    public boolean isActivated() {
+        return instance != null;
+    }
+
+    /**
+     * @return Returns whether the port object is or will be an instance of given {@code type}. A port of another class
+     * loader with the same type name is not. Neither creates a lazily registered port nor initializes its class.
+     */
+    boolean isInstanceOf(Class<?> type) {
+        Object current = instance;
+        if (current != null) return type.isInstance(current);
+        Class<?> portClass = lazyClass;
+        if (portClass == null) {
+            if (slot == null) return false;
+            try {
+                portClass = Class.forName(slot.getTypeName(), false, component.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+            lazyClass = portClass;
+        }
+        return type.isAssignableFrom(portClass);
+    }
+
+    private synchronized Object activate() {
+        Object current = instance;
+        if (current != null) return current;
+        try {
+            current = factory.call();
+        } catch (Exception e) {
+            throw new IllegalStateException("Ein Port der Komponente " + component.getName() +
+                    " konnte nicht aktiviert werden.", e);
+        }
+        instance = current;
+        return current;
+    }
+
+    /**
+     * @return Returns the amount of calls currently running on this instance via
+     * {@link IRuntimeEnvironmentAPI#invoke(Class, PortCall)}.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @param weight Relative share of calls this instance gets from {@link DispatchStrategies#weightedRoundRobin()}.
+     */
+    public void setWeight(int weight) {
+        if (weight < 1) throw new IllegalArgumentException("Weight must be at least 1 but was " + weight);
+        this.weight = weight;
+    }
+
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    /**
+     * Skips the write if the last one is recent, so concurrent requests do not keep invalidating the cache line.
+     */
+    void markAccessed(long now) {
+        if (now - lastAccessNanos > ACCESS_GRANULARITY_NANOS) lastAccessNanos = now;
+    }
+
+    boolean isCircuitOpen(long now) {
+        return circuitOpen && now - circuitOpenUntilNanos < 0;
+    }
+
+    void closeCircuit() {
+        // Checked first, so successful calls do not keep writing the shared counter
+        if (consecutiveFailures.get() != 0) consecutiveFailures.set(0);
+        if (circuitOpen) circuitOpen = false;
+    }
+
+    void recordFailure(int threshold, long openNanos) {
+        if (consecutiveFailures.incrementAndGet() >= threshold) {
+            circuitOpenUntilNanos = System.nanoTime() + openNanos;
+            circuitOpen = true;
+        }
+    }
+
+    @Nullable
+    PortSlot getSlot() {
+        return slot;
+    }
+
+    void setSlot(@NotNull PortSlot slot) {
+        this.slot = slot;
+    }
+
+    void acquire() {
+        inFlight.incrementAndGet();
+    }
+
+    void release() {
+        inFlight.decrementAndGet();
+    }
+}
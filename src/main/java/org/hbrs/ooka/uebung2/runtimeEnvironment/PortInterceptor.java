@@ -0,0 +1,31 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+
+/**
+ * Hook around every method call made through a port proxy, see {@link RuntimeEnvironmentAPI#getPort(Class)}.
+ * Interceptors are called on the calling thread and must be thread-safe. They are registered per API via
+ * {@link RuntimeEnvironmentAPI#addInterceptor(PortInterceptor)}, see {@link PortInterceptors} for built-in ones.
+ */
+public interface PortInterceptor {
+
+    /**
+     * Is called after {@code instance} was chosen and before {@code method} is invoked on it.
+     * @return Returns false to reject the instance. The proxy then asks the dispatch strategy for another one.
+     */
+    default boolean before(@NotNull PortInstance instance, @NotNull Method method) {
+        return true;
+    }
+
+    /**
+     * Is called after {@code method} returned or threw, if {@link #before(PortInstance, Method)} of all interceptors
+     * accepted the instance.
+     * @param nanos Duration of the call.
+     * @param failure The exception thrown by the call or null.
+     */
+    default void after(@NotNull PortInstance instance, @NotNull Method method, long nanos, @Nullable Throwable failure) {
+    }
+}
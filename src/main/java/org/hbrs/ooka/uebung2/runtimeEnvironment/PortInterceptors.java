@@ -0,0 +1,54 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.hbrs.ooka.uebung2.util.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+
+/**
+ * Built-in {@link PortInterceptor} implementations. Counting the calls in flight is not an interceptor, the proxies
+ * always do it like {@link IRuntimeEnvironmentAPI#invoke(Class, PortCall)}.
+ */
+public final class PortInterceptors {
+
+    private PortInterceptors() {
+    }
+
+    /**
+     * Records the duration of every call into {@code latencies}.
+     */
+    public static PortInterceptor timing(@NotNull LatencyHistogram latencies) {
+        return new PortInterceptor() {
+            @Override
+            public void after(@NotNull PortInstance instance, @NotNull Method method, long nanos, @Nullable Throwable failure) {
+                latencies.record(nanos);
+            }
+        };
+    }
+
+    /**
+     * Takes an instance out of rotation for {@code openDuration} after {@code failureThreshold} consecutive calls on it
+     * failed. Afterwards it gets calls again; the first failure reopens the circuit and the first success closes it.
+     * The state is kept per {@link PortInstance}, so only one circuit breaker should be registered per API.
+     */
+    public static PortInterceptor circuitBreaker(int failureThreshold, @NotNull Duration openDuration) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1 but was " + failureThreshold);
+        }
+        long openNanos = openDuration.toNanos();
+        return new PortInterceptor() {
+            @Override
+            public boolean before(@NotNull PortInstance instance, @NotNull Method method) {
+                return !instance.isCircuitOpen(System.nanoTime());
+            }
+
+            @Override
+            public void after(@NotNull PortInstance instance, @NotNull Method method, long nanos, @Nullable Throwable failure) {
+                if (failure == null) instance.closeCircuit();
+                else instance.recordFailure(failureThreshold, openNanos);
+            }
+        };
+    }
+}
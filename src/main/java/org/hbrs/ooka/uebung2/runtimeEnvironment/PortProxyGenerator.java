@@ -0,0 +1,506 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.hbrs.ooka.uebung2.annotations.Batchable;
+import org.hbrs.ooka.uebung2.annotations.Cacheable;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the proxies returned by {@link RuntimeEnvironmentAPI#getPort(Class)} for port interfaces.
+ * A proxy is a hidden class implementing the interface whose methods only pass their arguments to a
+ * {@code static final} {@link MethodHandle} per method. The JIT treats these handles as constants and inlines the
+ * whole chain: choosing an instance, the interceptors, counting the call in flight and the call itself. In contrast
+ * to {@link java.lang.reflect.Proxy} nothing is boxed and no argument array is allocated.
+ * Calls of {@link Batchable} methods are handed to a {@link PortBatcher} instead, which delivers them through the
+ * handle of the bulk method.
+ */
+final class PortProxyGenerator {
+    private static final String HANDLE_CLASS = "java/lang/invoke/MethodHandle";
+    private static final String HANDLE_DESCRIPTOR = "L" + HANDLE_CLASS + ";";
+    /**
+     * Full-privilege lookups in the package of port interfaces which the runtime cannot define hidden classes next to
+     * itself. Stored with the interface, so they are released together with its class loader.
+     */
+    private static final ClassValue<MethodHandles.Lookup> HOST_LOOKUPS = new ClassValue<>() {
+        @Override
+        protected MethodHandles.Lookup computeValue(Class<?> portInterface) {
+            try {
+                return anchorLookup(portInterface);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private static final MethodHandle ENTER;
+    private static final MethodHandle START;
+    private static final MethodHandle EXIT;
+    private static final MethodHandle GET_INSTANCE;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            ENTER = lookup.findVirtual(RuntimeEnvironmentAPI.class, "enter",
+                    MethodType.methodType(PortInstance.class, Class.class, Method.class));
+            START = lookup.findVirtual(RuntimeEnvironmentAPI.class, "startNanos", MethodType.methodType(long.class));
+            EXIT = lookup.findVirtual(RuntimeEnvironmentAPI.class, "exit", MethodType.methodType(void.class,
+                    Throwable.class, PortInstance.class, long.class, Method.class));
+            GET_INSTANCE = lookup.findVirtual(PortInstance.class, "getInstance", MethodType.methodType(Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private PortProxyGenerator() {
+    }
+
+    /**
+     * @return Returns a new proxy implementing {@code portInterface} which dispatches every call via {@code api}.
+     * @throws IllegalArgumentException if no proxy can be generated for the interface.
+     */
+    static <T> T generate(@NotNull RuntimeEnvironmentAPI api, @NotNull Class<T> portInterface) {
+        if (!portInterface.isInterface()) throw new IllegalArgumentException(portInterface + " is not an interface");
+        try {
+            MethodHandles.Lookup host = hostLookup(portInterface);
+            List<Method> methods = proxiedMethods(portInterface);
+            List<MethodHandle> handles = new ArrayList<>(methods.size());
+            for (Method method : methods) handles.add(dispatcher(api, portInterface, method, host));
+            for (int i = 0; i < methods.size(); i++) {
+                Batchable batchable = methods.get(i).getAnnotation(Batchable.class);
+                if (batchable != null) handles.set(i, batching(api, methods, handles, i, batchable));
+            }
+            for (int i = 0; i < methods.size(); i++) {
+                Cacheable cacheable = methods.get(i).getAnnotation(Cacheable.class);
+                if (cacheable != null) handles.set(i, caching(api, portInterface, methods.get(i), handles.get(i), cacheable));
+            }
+
+            String name = host.lookupClass().getPackageName().replace('.', '/');
+            name = (name.isEmpty() ? "" : name + "/") + "PortProxy";
+            MethodHandles.Lookup proxy = host.defineHiddenClassWithClassData(
+                    classBytes(name, portInterface, methods), List.copyOf(handles), true);
+            return portInterface.cast(proxy.findConstructor(proxy.lookupClass(), MethodType.methodType(void.class)).invoke());
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Für " + portInterface.getName() + " kann kein Proxy erzeugt werden.", e);
+        }
+    }
+
+    /**
+     * Returns the lookup the proxy is defined with. Public interfaces visible to the runtime are implemented in its own
+     * package. Any other interface is implemented in its own package, e.g. when loaded by a component or library loader.
+     */
+    private static MethodHandles.Lookup hostLookup(Class<?> portInterface) throws ReflectiveOperationException {
+        MethodHandles.Lookup own = MethodHandles.lookup();
+        if (Modifier.isPublic(portInterface.getModifiers()) && isVisible(portInterface, own.lookupClass().getClassLoader())) {
+            return own;
+        }
+        return HOST_LOOKUPS.get(portInterface);
+    }
+
+    private static boolean isVisible(Class<?> type, ClassLoader loader) {
+        try {
+            return Class.forName(type.getName(), false, loader) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Every class loader has its own unnamed module and hidden classes can only be defined with a lookup created in the
+     * module of the interface, so a small class next to the interface hands out such a lookup.
+     */
+    private static synchronized MethodHandles.Lookup anchorLookup(Class<?> portInterface)
+            throws ReflectiveOperationException {
+        MethodHandles.Lookup target = MethodHandles.privateLookupIn(portInterface, MethodHandles.lookup());
+        String name = portInterface.getName() + "$PortProxyLookup";
+        Class<?> anchor;
+        try {
+            anchor = target.defineClass(anchorBytes(name.replace('.', '/')));
+        } catch (LinkageError e) {
+            // Defined before by a concurrent computation of the ClassValue
+            anchor = Class.forName(name, false, portInterface.getClassLoader());
+            if (anchor.getClassLoader() != portInterface.getClassLoader()) throw e;
+        }
+        // The method is private, so only the runtime gets the lookup
+        MethodHandle lookup = MethodHandles.privateLookupIn(anchor, MethodHandles.lookup())
+                .findStatic(anchor, "lookup", MethodType.methodType(MethodHandles.Lookup.class));
+        try {
+            return (MethodHandles.Lookup) lookup.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return Returns all methods the proxy implements, i.e. every public non-static method of the interface
+     * including default and inherited methods, once per signature.
+     */
+    private static List<Method> proxiedMethods(Class<?> portInterface) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Method method : portInterface.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) continue;
+            String descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+                    .toMethodDescriptorString();
+            methods.putIfAbsent(method.getName() + descriptor, method);
+        }
+        return List.copyOf(methods.values());
+    }
+
+    /**
+     * Builds the handle executing one method of the proxy:
+     * {@code instance = enter(); start = startNanos(); try { return method(instance, args) } finally { exit(instance, start) }}.
+     */
+    private static MethodHandle dispatcher(RuntimeEnvironmentAPI api, Class<?> portInterface, Method method,
+                                           MethodHandles.Lookup host) throws IllegalAccessException {
+        MethodHandle target = host.unreflect(method);
+        Class<?> returnType = target.type().returnType();
+        // (PortInstance, long, args...) -> result
+        MethodHandle body = MethodHandles.filterArguments(
+                target.asType(target.type().changeParameterType(0, Object.class)), 0, GET_INSTANCE);
+        body = MethodHandles.dropArguments(body, 1, long.class);
+
+        // (Throwable, [result,] PortInstance, long) -> result
+        MethodHandle exit = MethodHandles.insertArguments(EXIT, 4, method).bindTo(api);
+        MethodHandle cleanup = exit;
+        if (returnType != void.class) {
+            MethodHandle passResult = MethodHandles.dropArguments(
+                    MethodHandles.dropArguments(MethodHandles.identity(returnType), 0, Throwable.class),
+                    2, PortInstance.class, long.class);
+            cleanup = MethodHandles.foldArguments(passResult, MethodHandles.dropArguments(exit, 1, returnType));
+        }
+
+        MethodHandle guarded = MethodHandles.tryFinally(body, cleanup);
+        guarded = MethodHandles.foldArguments(guarded, 1, START.bindTo(api));
+        return MethodHandles.foldArguments(guarded, MethodHandles.insertArguments(ENTER.bindTo(api), 0, portInterface, method));
+    }
+
+    /**
+     * Builds the handle of a {@link Batchable} method, which submits the argument to a new {@link PortBatcher} and,
+     * unless the method returns a future, waits for the result.
+     */
+    private static MethodHandle batching(RuntimeEnvironmentAPI api, List<Method> methods, List<MethodHandle> handles,
+                                         int index, Batchable batchable) {
+        Method method = methods.get(index);
+        if (method.getParameterCount() != 1) {
+            throw new IllegalArgumentException(method + " has to have exactly one parameter to be batchable.");
+        }
+        int bulkIndex = -1;
+        for (int i = 0; i < methods.size(); i++) {
+            Method candidate = methods.get(i);
+            if (candidate.getName().equals(batchable.bulkMethod()) && candidate.getParameterCount() == 1 &&
+                    candidate.getParameterTypes()[0].isAssignableFrom(List.class)) bulkIndex = i;
+        }
+        if (bulkIndex < 0) {
+            throw new IllegalArgumentException("Bulk method " + batchable.bulkMethod() + "(List) of " + method + " not found.");
+        }
+        Method bulkMethod = methods.get(bulkIndex);
+        Class<?> returnType = method.getReturnType();
+        if (returnType != void.class && !List.class.isAssignableFrom(bulkMethod.getReturnType())) {
+            throw new IllegalArgumentException("Bulk method " + bulkMethod + " has to return a List.");
+        }
+
+        PortBatcher batcher = new PortBatcher(method.getDeclaringClass().getSimpleName() + "." + bulkMethod.getName(),
+                handles.get(bulkIndex).asType(MethodType.methodType(Object.class, List.class)),
+                returnType != void.class, batchable.maxBatchSize(),
+                TimeUnit.MICROSECONDS.toNanos(batchable.maxDelayMicros()),
+                TimeUnit.MILLISECONDS.toNanos(batchable.timeoutMillis()), api.batchScheduler(), api.batchWorkers());
+        MethodHandle submit = PortBatcher.SUBMIT.bindTo(batcher);
+        boolean async = returnType != Object.class && returnType.isAssignableFrom(CompletableFuture.class);
+        MethodHandle call = async ? submit : MethodHandles.filterReturnValue(submit, PortBatcher.AWAIT);
+        return call.asType(MethodType.methodType(returnType, method.getParameterTypes()));
+    }
+
+    /**
+     * Wraps the handle of a {@link Cacheable} method, which may be batching as well, into a {@link PortResultCache}.
+     */
+    private static MethodHandle caching(RuntimeEnvironmentAPI api, Class<?> portInterface, Method method,
+                                        MethodHandle handle, Cacheable cacheable) {
+        if (method.getReturnType() == void.class) {
+            throw new IllegalArgumentException(method + " returns no result to be cached.");
+        }
+        if (cacheable.maxSize() < 1 || cacheable.ttlMillis() < 1) {
+            throw new IllegalArgumentException("Max size and TTL of the cache of " + method + " have to be positive.");
+        }
+        int parameters = method.getParameterCount();
+        MethodHandle target = handle.asType(handle.type().generic()).asSpreader(Object[].class, parameters);
+        PortResultCache cache = new PortResultCache(api, portInterface, method, target);
+        return PortResultCache.CALL.bindTo(cache).asCollector(Object[].class, parameters).asType(handle.type());
+    }
+
+    /**
+     * A class with a private static method returning a full-privilege lookup of the class.
+     */
+    private static byte[] anchorBytes(String name) {
+        ClassFile anchor = new ClassFile(name, List.of());
+        int lookup = anchor.methodRef("java/lang/invoke/MethodHandles", "lookup",
+                "()Ljava/lang/invoke/MethodHandles$Lookup;");
+        anchor.addMethod(Modifier.PRIVATE | Modifier.STATIC, "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;", 1, 0,
+                code -> {
+                    code.writeByte(0xB8); // invokestatic
+                    code.writeShort(lookup);
+                    code.writeByte(0xB0); // areturn
+                });
+        return anchor.toBytes();
+    }
+
+    private static byte[] classBytes(String name, Class<?> portInterface, List<Method> methods) {
+        ClassFile proxy = new ClassFile(name, List.of(portInterface.getName().replace('.', '/')));
+
+        int objectInit = proxy.methodRef("java/lang/Object", "<init>", "()V");
+        proxy.addMethod(Modifier.PUBLIC, "<init>", "()V", 1, 1, code -> {
+            code.writeByte(0x2A); // aload_0
+            code.writeByte(0xB7); // invokespecial
+            code.writeShort(objectInit);
+            code.writeByte(0xB1); // return
+        });
+
+        // static { handle<i> = MethodHandles.classDataAt(MethodHandles.lookup(), "_", MethodHandle.class, i); }
+        int lookup = proxy.methodRef("java/lang/invoke/MethodHandles", "lookup", "()Ljava/lang/invoke/MethodHandles$Lookup;");
+        int classDataAt = proxy.methodRef("java/lang/invoke/MethodHandles", "classDataAt",
+                "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)Ljava/lang/Object;");
+        int dataName = proxy.string("_");
+        int handleClass = proxy.classRef(HANDLE_CLASS);
+        int[] fields = new int[methods.size()];
+        for (int i = 0; i < methods.size(); i++) {
+            proxy.addField(Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL, "handle" + i, HANDLE_DESCRIPTOR);
+            fields[i] = proxy.fieldRef(name, "handle" + i, HANDLE_DESCRIPTOR);
+        }
+        proxy.addMethod(Modifier.STATIC, "<clinit>", "()V", 4, 1, code -> {
+            code.writeByte(0xB8); // invokestatic
+            code.writeShort(lookup);
+            code.writeByte(0x4B); // astore_0
+            for (int i = 0; i < fields.length; i++) {
+                code.writeByte(0x2A); // aload_0
+                code.writeByte(0x13); // ldc_w
+                code.writeShort(dataName);
+                code.writeByte(0x13); // ldc_w
+                code.writeShort(handleClass);
+                code.writeByte(0x11); // sipush
+                code.writeShort(i);
+                code.writeByte(0xB8); // invokestatic
+                code.writeShort(classDataAt);
+                code.writeByte(0xC0); // checkcast
+                code.writeShort(handleClass);
+                code.writeByte(0xB3); // putstatic
+                code.writeShort(fields[i]);
+            }
+            code.writeByte(0xB1); // return
+        });
+
+        for (int i = 0; i < methods.size(); i++) {
+            Method method = methods.get(i);
+            String descriptor = MethodType.methodType(method.getReturnType(), method.getParameterTypes())
+                    .toMethodDescriptorString();
+            int invokeExact = proxy.methodRef(HANDLE_CLASS, "invokeExact", descriptor);
+            int field = fields[i];
+            int slots = 1;
+            for (Class<?> parameter : method.getParameterTypes()) slots += slotSize(parameter);
+            proxy.addMethod(Modifier.PUBLIC, method.getName(), descriptor, slots, slots, code -> {
+                code.writeByte(0xB2); // getstatic
+                code.writeShort(field);
+                int slot = 1;
+                for (Class<?> parameter : method.getParameterTypes()) {
+                    code.writeByte(loadOpcode(parameter));
+                    code.writeByte(slot);
+                    slot += slotSize(parameter);
+                }
+                code.writeByte(0xB6); // invokevirtual, signature polymorphic
+                code.writeShort(invokeExact);
+                code.writeByte(returnOpcode(method.getReturnType()));
+            });
+        }
+        return proxy.toBytes();
+    }
+
+    private static int slotSize(Class<?> type) {
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    private static int loadOpcode(Class<?> type) {
+        if (type == long.class) return 0x16; // lload
+        if (type == float.class) return 0x17; // fload
+        if (type == double.class) return 0x18; // dload
+        if (type.isPrimitive()) return 0x15; // iload
+        return 0x19; // aload
+    }
+
+    private static int returnOpcode(Class<?> type) {
+        if (type == void.class) return 0xB1; // return
+        if (type == long.class) return 0xAD; // lreturn
+        if (type == float.class) return 0xAE; // freturn
+        if (type == double.class) return 0xAF; // dreturn
+        if (type.isPrimitive()) return 0xAC; // ireturn
+        return 0xB0; // areturn
+    }
+
+    /**
+     * Minimal class file writer for final classes extending {@link Object}. The code of the generated methods has no
+     * branches, so Java 8 class files without stack map frames suffice.
+     */
+    private static final class ClassFile {
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final Map<String, Integer> poolIndex = new HashMap<>();
+        private int poolSize = 1;
+
+        private final int thisClass;
+        private final int superClass;
+        private final List<Integer> interfaces = new ArrayList<>();
+        private final List<byte[]> fields = new ArrayList<>();
+        private final List<byte[]> methods = new ArrayList<>();
+
+        ClassFile(String name, List<String> interfaceNames) {
+            thisClass = classRef(name);
+            superClass = classRef("java/lang/Object");
+            for (String interfaceName : interfaceNames) interfaces.add(classRef(interfaceName));
+        }
+
+        void addField(int access, String name, String descriptor) {
+            fields.add(member(access, name, descriptor, null));
+        }
+
+        void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, Writer code) {
+            byte[] bytes = bytes(code);
+            int codeName = utf8("Code");
+            byte[] attribute = bytes(out -> {
+                out.writeShort(codeName);
+                out.writeInt(12 + bytes.length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeShort(0); // exception table
+                out.writeShort(0); // attributes
+            });
+            methods.add(member(access, name, descriptor, attribute));
+        }
+
+        int classRef(String name) {
+            int nameIndex = utf8(name);
+            return constant("C" + name, out -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            });
+        }
+
+        int string(String value) {
+            int valueIndex = utf8(value);
+            return constant("S" + value, out -> {
+                out.writeByte(8);
+                out.writeShort(valueIndex);
+            });
+        }
+
+        int fieldRef(String owner, String name, String descriptor) {
+            return memberRef(9, owner, name, descriptor);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return memberRef(10, owner, name, descriptor);
+        }
+
+        private int memberRef(int tag, String owner, String name, String descriptor) {
+            int clazz = classRef(owner);
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = constant("N" + name + descriptor, out -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+            });
+            return constant(tag + owner + "." + name + descriptor, out -> {
+                out.writeByte(tag);
+                out.writeShort(clazz);
+                out.writeShort(nameAndType);
+            });
+        }
+
+        byte[] toBytes() {
+            return bytes(out -> {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(52);
+                out.writeShort(poolSize);
+                out.write(pool.toByteArray());
+                out.writeShort(Modifier.PUBLIC | Modifier.FINAL | 0x20); // ACC_SUPER
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(interfaces.size());
+                for (int index : interfaces) out.writeShort(index);
+                writeAll(out, fields);
+                writeAll(out, methods);
+                out.writeShort(0); // attributes
+            });
+        }
+
+        private byte[] member(int access, String name, String descriptor, byte[] attribute) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            return bytes(out -> {
+                out.writeShort(access);
+                out.writeShort(nameIndex);
+                out.writeShort(descriptorIndex);
+                out.writeShort(attribute == null ? 0 : 1);
+                if (attribute != null) out.write(attribute);
+            });
+        }
+
+        private int utf8(String value) {
+            return constant("U" + value, out -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            });
+        }
+
+        /**
+         * Adds a constant unless it exists. {@code writer} must not add constants itself.
+         */
+        private int constant(String key, Writer writer) {
+            Integer index = poolIndex.get(key);
+            if (index != null) return index;
+            write(pool, writer);
+            poolIndex.put(key, poolSize);
+            return poolSize++;
+        }
+
+        private static void writeAll(DataOutputStream out, List<byte[]> entries) throws IOException {
+            out.writeShort(entries.size());
+            for (byte[] entry : entries) out.write(entry);
+        }
+
+        private static byte[] bytes(Writer writer) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            write(bytes, writer);
+            return bytes.toByteArray();
+        }
+
+        private static void write(OutputStream target, Writer writer) {
+            try {
+                DataOutputStream out = new DataOutputStream(target);
+                writer.write(out);
+                out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,13 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+/**
+ * Thrown instead of calling a port when the call is refused up front: the bulkhead of the port type is full or all
+ * instances were rejected by a {@link PortInterceptor}. The port was not called, so the call may safely be repeated.
+ */
+public class PortRejectedException extends IllegalStateException {
+    private static final long serialVersionUID = 1L;
+
+    public PortRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,59 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.hbrs.ooka.uebung2.util.ExpiringLruCache;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serves the calls of one {@link org.hbrs.ooka.uebung2.annotations.Cacheable} method of a port proxy from the cache
+ * of the port type currently implementing the interface, so the cache is shared by all its instances. Two callers
+ * missing the same key at the same time both call the port.
+ */
+final class PortResultCache {
+    static final MethodHandle CALL;
+
+    static {
+        try {
+            CALL = MethodHandles.lookup().findVirtual(PortResultCache.class, "call",
+                    MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final RuntimeEnvironmentAPI api;
+    private final Class<?> portInterface;
+    private final Method method;
+    /**
+     * The method of the proxy without caching, i.e. dispatched like every other call.
+     */
+    private final MethodHandle target;
+
+    /**
+     * @param target Handle of type {@code (Object[]) -> Object}.
+     */
+    PortResultCache(@NotNull RuntimeEnvironmentAPI api, @NotNull Class<?> portInterface, @NotNull Method method,
+                    @NotNull MethodHandle target) {
+        this.api = api;
+        this.portInterface = portInterface;
+        this.method = method;
+        this.target = target;
+    }
+
+    private Object call(Object[] arguments) throws Throwable {
+        ExpiringLruCache<List<Object>, Object> cache = api.resultCache(portInterface, method);
+        // The array is created for this call only, so it cannot change while being a key
+        List<Object> key = Arrays.asList(arguments);
+        Object result = cache.get(key);
+        if (result != null) return result;
+        result = target.invokeExact(arguments);
+        if (result != null) cache.put(key, result);
+        return result;
+    }
+}
@@ -0,0 +1,192 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.hbrs.ooka.uebung2.annotations.Cacheable;
+import org.hbrs.ooka.uebung2.util.ExpiringLruCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * All registered instances of one port type together with the {@link DispatchStrategy} choosing between them.
+ * Reads are lock- and allocation-free, writes copy the instance array and are rare (deploy, redeploy and passivation).
+ */
+final class PortSlot {
+    private static final PortInstance[] EMPTY = new PortInstance[0];
+
+    private final String typeName;
+    private volatile PortInstance[] instances = EMPTY;
+    @NotNull
+    private volatile DispatchStrategy strategy = DispatchStrategies.roundRobin();
+    /**
+     * Requests for this port type, including those failing because no instance is registered.
+     */
+    private final LongAdder requests = new LongAdder();
+    @Nullable
+    private volatile PortBulkhead bulkhead;
+    /**
+     * Results of the {@link Cacheable} methods of proxies served by this port type, by interface method.
+     */
+    private final ConcurrentHashMap<Method, ExpiringLruCache<List<Object>, Object>> resultCaches =
+            new ConcurrentHashMap<>();
+    /**
+     * The instances implementing an interface, by interface. An entry is valid as long as its source is the current
+     * instance array; writes drop all entries, so no interface keeps its class loader reachable.
+     */
+    private final ConcurrentHashMap<Class<?>, Implementations> implementations = new ConcurrentHashMap<>();
+
+    private record Implementations(PortInstance[] source, PortInstance[] instances) {
+    }
+
+    PortSlot(String typeName) {
+        this.typeName = typeName;
+    }
+
+    String getTypeName() {
+        return typeName;
+    }
+
+    synchronized void add(PortInstance instance) {
+        PortInstance[] current = instances;
+        PortInstance[] next = new PortInstance[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = instance;
+        instance.setSlot(this);
+        instances = next;
+        implementations.clear();
+    }
+
+    /**
+     * @return Returns the removed instances.
+     */
+    List<PortInstance> removeIf(Predicate<PortInstance> filter) {
+        return replace(filter, List.of());
+    }
+
+    /**
+     * Removes the instances matching {@code filter} and adds {@code additions} in one write, so readers see either
+     * the old or the new instances but never neither.
+     * @return Returns the removed instances.
+     */
+    synchronized List<PortInstance> replace(Predicate<PortInstance> filter, List<PortInstance> additions) {
+        PortInstance[] current = instances;
+        List<PortInstance> kept = new ArrayList<>(current.length + additions.size());
+        List<PortInstance> removed = new ArrayList<>();
+        for (PortInstance instance : current) {
+            (filter.test(instance) ? removed : kept).add(instance);
+        }
+        if (removed.isEmpty() && additions.isEmpty()) return removed;
+        for (PortInstance instance : additions) instance.setSlot(this);
+        kept.addAll(additions);
+        instances = kept.toArray(EMPTY);
+        implementations.clear();
+        return removed;
+    }
+
+    int size() {
+        return instances.length;
+    }
+
+    PortInstance[] snapshot() {
+        return instances;
+    }
+
+    long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Nullable
+    PortBulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    void setBulkhead(@Nullable PortBulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * @param method Interface method carrying {@link Cacheable}.
+     */
+    ExpiringLruCache<List<Object>, Object> resultCache(@NotNull Method method) {
+        ExpiringLruCache<List<Object>, Object> cache = resultCaches.get(method);
+        if (cache != null) return cache;
+        return resultCaches.computeIfAbsent(method, m -> {
+            Cacheable cacheable = m.getAnnotation(Cacheable.class);
+            return new ExpiringLruCache<>(cacheable.maxSize(), Duration.ofMillis(cacheable.ttlMillis()));
+        });
+    }
+
+    Map<Method, ExpiringLruCache<List<Object>, Object>> getResultCaches() {
+        return resultCaches;
+    }
+
+    /**
+     * Drops all caches. Unlike invalidating them, this also releases the interface methods and with them the class
+     * loaders they stem from.
+     */
+    void clearResultCaches() {
+        resultCaches.clear();
+    }
+
+    void setStrategy(@NotNull DispatchStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return Returns the instance chosen by the current strategy or null if no instance is registered.
+     */
+    PortInstance next() {
+        requests.increment();
+        PortInstance[] current = instances;
+        if (current.length == 0) return null;
+        return strategy.select(current);
+    }
+
+    /**
+     * Like {@link #next()}, but only chooses between the instances implementing given interface. Port classes of other
+     * class loaders share the slot by type name, yet do not implement the interface of this one.
+     * @return Returns the chosen instance or null if no instance implements {@code portInterface}.
+     */
+    PortInstance next(@NotNull Class<?> portInterface) {
+        requests.increment();
+        PortInstance[] current = implementing(portInterface);
+        if (current.length == 0) return null;
+        return strategy.select(current);
+    }
+
+    /**
+     * @return Returns whether any instance implements given interface. Unlike {@link #implementing(Class)} the result
+     * is not cached, so checking slots which turn out not to serve the interface leaves no entry behind.
+     */
+    boolean hasInstanceOf(@NotNull Class<?> portInterface) {
+        for (PortInstance instance : instances) {
+            if (instance.isInstanceOf(portInterface)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Returns the instances implementing given interface, which are all instances unless several class loaders
+     * registered the port type.
+     */
+    PortInstance[] implementing(@NotNull Class<?> portInterface) {
+        PortInstance[] current = instances;
+        Implementations cached = implementations.get(portInterface);
+        if (cached != null && cached.source == current) return cached.instances;
+
+        List<PortInstance> matching = new ArrayList<>(current.length);
+        for (PortInstance instance : current) {
+            if (instance.isInstanceOf(portInterface)) matching.add(instance);
+        }
+        PortInstance[] result = matching.size() == current.length ? current : matching.toArray(EMPTY);
+        implementations.put(portInterface, new Implementations(current, result));
+        return result;
+    }
+}
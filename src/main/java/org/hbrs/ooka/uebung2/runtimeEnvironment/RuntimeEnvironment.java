@@ -1,43 +1,296 @@
 package org.hbrs.ooka.uebung2.runtimeEnvironment;
 
 import lombok.Getter;
+import lombok.Setter;
 import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.component.ComponentMetadata;
+import org.hbrs.ooka.uebung2.component.ComponentMetadataIndex;
 import org.hbrs.ooka.uebung2.component.ComponentState;
 import org.hbrs.ooka.uebung2.util.LoggerUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class RuntimeEnvironment {
     public static final Logger LOGGER = LoggerUtil.getLogger(RuntimeEnvironment.class);
+    /**
+     * Name of the file in the component directory holding the {@link ComponentMetadataIndex}.
+     */
+    public static final String METADATA_INDEX_FILE = ".component-index";
+    /**
+     * Name of the default library directory inside the component directory.
+     */
+    public static final String LIB_DIR = "lib";
+    /**
+     * Maximum time unloading a component waits for calls still running on its ports.
+     */
+    public static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(5);
+    private static final long DRAIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
     @Getter
     private final RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+    @Getter
+    private final ComponentExecutor executor = new ComponentExecutor();
     @NotNull
     private final Path compDir;
+    @Getter @NotNull
+    private final Path libDir;
+    @Nullable
+    private URLClassLoader libraryClassLoader;
+    @Getter @NotNull
+    private final ComponentMetadataIndex metadataIndex;
 
     /**
-     * Die Laufende Identifikationsnummer ergibt sich als die Position in der ArrayList.
+     * Die Identifikationsnummern werden vom Register fortlaufend vergeben und bleiben auch nach dem Löschen
+     * anderer Komponenten stabil.
      */
-    private ArrayList<Component> components = new ArrayList<>();
+    @Getter
+    private final ComponentRegistry registry = new ComponentRegistry();
+    /**
+     * Maximale Anzahl an Threads für Massenoperationen wie start(), refresh(), deployAll() und startAll().
+     */
+    @Getter
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * If set, deploying only registers descriptors of the ports. A port is instantiated on the first request and its
+     * component is started then, if it is not running yet.
+     */
+    @Getter @Setter
+    private volatile boolean lazyActivation = false;
+    /**
+     * Components whose start was triggered by a port request and has not completed yet, by identity like in
+     * {@link ComponentExecutor}.
+     */
+    private final Set<Component> activating = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    /**
+     * Started components without port request for this long are passivated. Null disables idle tracking.
+     */
+    @Getter @Nullable
+    private Duration idleTimeout;
+    @Nullable
+    private ScheduledExecutorService idleMonitor;
+    /**
+     * Time a changed jar must stay untouched before it is processed, see {@link #setHotRedeploy(boolean)} and
+     * {@link #setAutoDiscovery(boolean)}.
+     */
+    public static final Duration WATCH_QUIET_PERIOD = Duration.ofMillis(500);
+    @Nullable
+    private ComponentDirectoryWatcher directoryWatcher;
+    @Getter
+    private volatile boolean hotRedeploy = false;
+    @Getter
+    private volatile boolean autoDiscovery = false;
+    /**
+     * Replicas added by {@link #scaleComponent(int, int)}, by ID of the scaled component. The newest is removed first.
+     * Guarded by itself, so scaling, deleting, redeploying and passivating never see a replica half added or removed.
+     */
+    private final Map<Integer, Deque<Replica>> replicas = new HashMap<>();
+    @Getter
+    private final RuntimeMetrics metrics = new RuntimeMetrics(this);
+    /**
+     * Name of {@link #metrics} on the platform MBean server, unique per runtime environment in this JVM.
+     */
+    @Getter
+    private final ObjectName metricsObjectName;
     @Getter
     private boolean running = false;
 
+    /**
+     * A replica either is a component of its own with {@code id} or, for stateless components, a further set of port
+     * instances in the class loader of the scaled component ({@code id} is -1 then).
+     */
+    private record Replica(int id, List<PortInstance> sharedInstances) {}
+
+    /**
+     * Uses the subdirectory {@value #LIB_DIR} of the component directory for shared libraries.
+     */
     public RuntimeEnvironment(String compDir) {
+        this(compDir, Paths.get(compDir, LIB_DIR).toString());
+    }
+
+    /**
+     * @param libDir Directory with jars shared by all components, see {@link #getLibraryClassLoader()}.
+     *               It does not need to exist.
+     */
+    public RuntimeEnvironment(String compDir, String libDir) {
         Path cmpPath = Paths.get(compDir);
         if (!cmpPath.toFile().isDirectory()){
             throw new IllegalArgumentException(compDir + " is not a directory");
         }
         this.compDir = cmpPath;
+        this.libDir = Paths.get(libDir);
+        this.metadataIndex = new ComponentMetadataIndex(cmpPath.resolve(METADATA_INDEX_FILE));
+        try {
+            this.metricsObjectName = new ObjectName("org.hbrs.ooka.uebung2:type=RuntimeEnvironment,id=" +
+                    INSTANCES.getAndIncrement());
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the loader of the jars in the library directory, which is the parent of every component loader created
+     * by this runtime environment. Its classes are loaded, linked and JIT-compiled once instead of once per component
+     * and replica. As usual, the parent is asked first, so a class in a library wins over a copy in a component jar.
+     * The loader is created on first use and closed on {@link #shutdown()}.
+     * @return Returns the library loader or null if there are no libraries.
+     */
+    public synchronized @Nullable ClassLoader getLibraryClassLoader() {
+        if (libraryClassLoader == null) {
+            File[] jars = libDir.toFile().listFiles((dir, name) -> name.endsWith(".jar"));
+            if (jars == null || jars.length == 0) return null;
+            Arrays.sort(jars);
+
+            URL[] urls = new URL[jars.length];
+            try {
+                for (int i = 0; i < jars.length; i++) urls[i] = jars[i].toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalStateException("Die Bibliotheken in " + libDir + " konnten nicht geladen werden.", e);
+            }
+            libraryClassLoader = new URLClassLoader(urls);
+            LOGGER.info(() -> "Es wurden " + jars.length + " gemeinsame Bibliotheken aus " + libDir + " geladen.");
+        }
+        return libraryClassLoader;
+    }
+
+    synchronized boolean isLibraryClassLoaderOpen() {
+        return libraryClassLoader != null;
+    }
+
+    /**
+     * @return Returns the logger for messages concerning the component with given name. Its level can be set
+     * separately via {@link LoggerUtil#setLevel(String, Level)} and defaults to the level of {@link #LOGGER}.
+     */
+    public static Logger getComponentLogger(String componentName) {
+        return LoggerUtil.getLogger(LOGGER, componentName);
+    }
+
+    /**
+     * Enables idle passivation: a started component whose ports were not requested within {@code idleTimeout} is
+     * stopped and replaced by a fresh, lazily deployed copy under the same ID, releasing its port instances and
+     * classloader. The next port request instantiates the port again and restarts the component.
+     * @param idleTimeout The timeout or null to disable idle passivation.
+     */
+    public synchronized void setIdleTimeout(@Nullable Duration idleTimeout) {
+        if (idleTimeout != null && (idleTimeout.isNegative() || idleTimeout.isZero())) {
+            throw new IllegalArgumentException("Idle timeout must be positive but was " + idleTimeout);
+        }
+        if (idleMonitor != null) {
+            idleMonitor.shutdownNow();
+            idleMonitor = null;
+        }
+        this.idleTimeout = idleTimeout;
+        api.setAccessTracking(idleTimeout != null);
+        if (idleTimeout == null) return;
+
+        idleMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Laufzeitumgebung-Leerlauf");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Checking four times per timeout passivates a component at most 25 % later than due
+        long period = Math.max(1, idleTimeout.toMillis() / 4);
+        idleMonitor.scheduleWithFixedDelay(this::passivateIdleComponents, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Enables hot redeploy: the component directory is watched and every component whose jar changed is redeployed
+     * via {@link #redeployComponentById(int)} once the file was not touched for {@link #WATCH_QUIET_PERIOD}.
+     */
+    public synchronized void setHotRedeploy(boolean enabled) {
+        hotRedeploy = enabled;
+        updateDirectoryWatcher();
+    }
+
+    /**
+     * Enables auto discovery, which replaces calling {@link #refresh()} by hand: the component directory is watched,
+     * jars added to it are loaded and components whose jar was removed are deleted. Without hot redeploy, components
+     * whose jar was replaced are deleted and loaded anew, so no stale version keeps running. Only the changed files
+     * are processed, once they were not touched for {@link #WATCH_QUIET_PERIOD} and their size is stable.
+     */
+    public synchronized void setAutoDiscovery(boolean enabled) {
+        autoDiscovery = enabled;
+        updateDirectoryWatcher();
+    }
+
+    private void updateDirectoryWatcher() {
+        boolean needed = hotRedeploy || autoDiscovery;
+        if (needed == (directoryWatcher != null)) return;
+        try {
+            if (needed) {
+                directoryWatcher = new ComponentDirectoryWatcher(compDir, WATCH_QUIET_PERIOD, this::onDirectoryChange);
+            } else {
+                directoryWatcher.close();
+                directoryWatcher = null;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Watching " + compDir + " could not be " + (needed ? "started" : "stopped"), e);
+        }
+    }
+
+    private void onDirectoryChange(Set<Path> files) {
+        List<File> added = new ArrayList<>();
+        for (Path path : files) {
+            File file = path.toFile();
+            String name = Component.getNameFromJarFile(file);
+            boolean known = registry.containsName(name);
+            if (file.isFile() && known && hotRedeploy) {
+                redeployComponentsByName(name);
+            } else if (file.isFile() && known && autoDiscovery) {
+                int deleted = deleteComponentsByName(name);
+                LOGGER.info(() -> "Die Datei " + file.getName() + " wurde geändert, daher wurden " + deleted +
+                        " Komponenten gelöscht und werden neu geladen.");
+                added.add(file);
+            } else if (file.isFile() && !known && autoDiscovery) {
+                added.add(file);
+            } else if (!file.exists() && known && autoDiscovery) {
+                int deleted = deleteComponentsByName(name);
+                LOGGER.info(() -> "Die Datei " + file.getName() + " wurde entfernt, daher wurden " + deleted +
+                        " Komponenten gelöscht.");
+            }
+        }
+        if (added.isEmpty()) return;
+
+        List<Component> loaded = loadComponents(added);
+        LOGGER.info(() -> {
+            StringBuilder addedComponents = new StringBuilder();
+            loaded.forEach(component -> addedComponents.append(component.getName()).append("  "));
+            return "Es wurden folgende Komponenten aus dem Verzeichnis neu dazugeladen:\n " + addedComponents;
+        });
+    }
+
+    private int deleteComponentsByName(String name) {
+        int deleted = 0;
+        for (int id : registry.getIdsByName(name)) {
+            if (deleteComponentById(id)) deleted++;
+        }
+        return deleted;
+    }
+
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1 but was " + parallelism);
+        this.parallelism = parallelism;
     }
 
     public void start(){
@@ -46,19 +299,15 @@ public class RuntimeEnvironment {
             LOGGER.severe("Laufzeitumgebung ist bereits gestartet.");
             return;
         }
-        Arrays.stream(Objects.requireNonNull(compDir.toFile().listFiles()))
-                .filter(file -> file.getName().endsWith(".jar")).forEach(file -> {
-                    Component component = null;
-                    try {
-                        component = new Component(file);
-                        components.add(component);
-                    } catch (MalformedURLException e) {
-                        LOGGER.log(Level.SEVERE, "Komponente mit dem Dateinamen \"" + file.getName() +
-                                "\" konnte nicht geladen werden aufgrund eines Fehlers: Siehe folgende Fehlermeldung: ", e);
-                    }
-        });
+        loadComponents(listJarFiles());
 
         running = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (!server.isRegistered(metricsObjectName)) server.registerMBean(metrics, metricsObjectName);
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Die Metriken konnten nicht per JMX veröffentlicht werden.");
+        }
         LOGGER.info("- - - Laufzeitumgebung erfolgreich gestartet - - -");
     }
 
@@ -68,138 +317,572 @@ public class RuntimeEnvironment {
             return;
         }
 
-        List<String> compNames = components.stream().map(Component::getName).toList();
-        StringBuilder addedComponents = new StringBuilder();
+        List<File> newFiles = listJarFiles().stream()
+                .filter(file -> !registry.containsName(Component.getNameFromJarFile(file)))
+                .toList();
+        List<Component> added = loadComponents(newFiles);
+        LOGGER.info(() -> {
+            StringBuilder addedComponents = new StringBuilder();
+            added.forEach(component -> addedComponents.append(component.getName()).append("  "));
+            return "Es wurden folgende Komponenten aus dem Verzeichnis neu dazugeladen:\n " + addedComponents;
+        });
+    }
 
-        Arrays.stream(Objects.requireNonNull(compDir.toFile().listFiles()))
+    private List<File> listJarFiles(){
+        return Arrays.stream(Objects.requireNonNull(compDir.toFile().listFiles()))
                 .filter(file -> file.getName().endsWith(".jar"))
-                .filter(file -> !compNames.contains(Component.getNameFromJarFile(file)))
-                .forEach(file -> {
-                    Component component;
-                    try {
-                        component = new Component(file);
-                        components.add(component);
-                        addedComponents.append(component.getName()).append("  ");
-                    } catch (MalformedURLException e) {
-                        LOGGER.log(Level.SEVERE, "Komponente mit dem Dateinamen \"" + file.getName() +
-                                "\" konnte nicht geladen werden aufgrund eines Fehlers: Siehe folgende Fehlermeldung: ", e);
-                    }
-                });
-        LOGGER.info("Es wurden folgende Komponenten aus dem Verzeichnis neu dazugeladen:\n " + addedComponents);
+                .toList();
+    }
+
+    /**
+     * Creates a component for each of the given jar files in parallel on at most {@link #getParallelism()} threads.
+     * The components are added in the order of the given files, so IDs do not depend on thread scheduling.
+     * @return Returns the components which could be loaded.
+     */
+    private List<Component> loadComponents(List<File> files){
+        List<Component> loaded = runBulk(files, file -> {
+            try {
+                return new Component(file, getLibraryClassLoader());
+            } catch (MalformedURLException e) {
+                LOGGER.log(Level.SEVERE, e, () -> "Komponente mit dem Dateinamen \"" + file.getName() +
+                        "\" konnte nicht geladen werden aufgrund eines Fehlers: Siehe folgende Fehlermeldung: ");
+                return null;
+            }
+        }).stream().filter(Objects::nonNull).toList();
+
+        loaded.forEach(registry::register);
+        return loaded;
+    }
+
+    /**
+     * Deploys all components in state LOADED in parallel on at most {@link #getParallelism()} threads.
+     * @return Returns the amount of successfully deployed components.
+     */
+    public int deployAll(){
+        int deployed = (int) runBulk(idsInState(ComponentState.LOADED), this::deploy).stream()
+                .filter(Boolean::booleanValue).count();
+        metadataIndex.flush();
+        return deployed;
+    }
+
+    /**
+     * Starts all components in state DEPLOYED in parallel on at most {@link #getParallelism()} threads.
+     * @return Returns the amount of successfully started components.
+     */
+    public int startAll(){
+        return (int) runBulk(idsInState(ComponentState.DEPLOYED), this::startComponentById).stream()
+                .filter(Boolean::booleanValue).count();
+    }
+
+    private List<Integer> idsInState(ComponentState state){
+        return registry.snapshot().entrySet().stream()
+                .filter(entry -> entry.getValue().getState() == state)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * @return Returns the component with given {@code id} or null after logging a warning if there is none.
+     */
+    private @Nullable Component findComponent(int id){
+        Component component = registry.get(id);
+        if (component == null){
+            LOGGER.warning(() -> "Eine Komponente mit der ID " + id + " konnte nicht gefunden werden.");
+        }
+        return component;
+    }
+
+    /**
+     * Applies given {@code action} to all {@code items} on a bounded executor and returns the results in item order.
+     */
+    private <T, R> List<R> runBulk(List<T> items, Function<T, R> action){
+        if (items.isEmpty()) return List.of();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, items.size()));
+        try {
+            List<Future<R>> futures = new ArrayList<>(items.size());
+            for (T item : items) futures.add(executor.submit(() -> action.apply(item)));
+
+            List<R> results = new ArrayList<>(items.size());
+            for (Future<R> future : futures) results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Massenoperation wurde unterbrochen.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Massenoperation ist fehlgeschlagen.", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
     }
 
     // Folgende Methoden geben zurück, ob sie erfolgreich waren oder nicht
     public boolean deployComponentById(int id){
-        if (id < 0 || id >= components.size()){
-            LOGGER.warning("Eine Komponente mit der ID " + id + " konnte nicht gefunden werden.");
-            return false;
-        }
+        boolean deployed = deploy(id);
+        metadataIndex.flush();
+        return deployed;
+    }
 
-        Component component = components.get(id);
+    private boolean deploy(int id){
+        Component component = findComponent(id);
+        if (component == null) return false;
 
+        Logger logger = getComponentLogger(component.getName());
         if (component.getState() != ComponentState.LOADED){
-            id = components.size();
+            Component original = component;
+            int originalId = id;
             try {
-                component = new Component(component);
-                components.add(component);
+                component = Component.replicaOf(original);
+                id = registry.register(component);
             } catch (Exception e) {
-                LOGGER.info("Die Komponente \"" + components.get(id).getName() + "\" mit der ID " + id + " konnte nicht erneut deployt werden.");
+                logger.log(Level.SEVERE, e, () -> "Die Komponente \"" + original.getName() + "\" mit der ID " + originalId +
+                        " konnte nicht erneut deployt werden. Siehe folgende Fehlermeldung: ");
+                return false;
             }
         }
 
+        Component deployed = component;
+        int deployedId = id;
         try {
-            components.get(id).deploy(this);
-            LOGGER.info("Die Komponente \"" + components.get(id).getName() + "\" mit der ID " + id + " wurde erfolgreich deployt.");
+            deployed.deploy(this);
+            logger.info(() -> "Die Komponente \"" + deployed.getName() + "\" mit der ID " + deployedId +
+                    " wurde erfolgreich deployt.");
             return true;
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Beim Deployen der Komponente \"" + components.get(id).getName() +
-                    "\" mit der ID " + id + " ist ein Fehler aufgetreten. Siehe folgende Fehlermeldung: ", e);
+            logger.log(Level.SEVERE, e, () -> "Beim Deployen der Komponente \"" + deployed.getName() +
+                    "\" mit der ID " + deployedId + " ist ein Fehler aufgetreten. Siehe folgende Fehlermeldung: ");
             return false;
         }
     }
 
+    /**
+     * Starts the component asynchronously, because its start method may run for the whole lifetime of the component.
+     * The outcome is logged as soon as the start method returns. Use {@link #startComponentAsync(int)} to wait for it.
+     * @return Returns true if the start could be initiated.
+     */
     public boolean startComponentById(int id){
-        if (id < 0 || id >= components.size()){
-            LOGGER.warning("Eine Komponente mit der ID " + id + " konnte nicht gefunden werden.");
+        if (findComponent(id) == null) return false;
+        startComponentAsync(id);
+        return true;
+    }
+
+    /**
+     * Starts the component on its own thread of the {@link ComponentExecutor}.
+     * @return Returns a future completing with the start latency or exceptionally if the component could not be started.
+     */
+    public CompletableFuture<Duration> startComponentAsync(int id){
+        Component component = findComponent(id);
+        if (component == null){
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown component id " + id));
+        }
+        Logger logger = getComponentLogger(component.getName());
+        return executor.start(component, threadName(component, id, "start")).whenComplete((latency, e) -> {
+            if (e == null) {
+                logger.info(() -> "Die Komponente \"" + component.getName() + "\" mit der ID " + id +
+                        " konnte erfolgreich gestartet werden (" + latency.toMillis() + " ms).");
+            }
+            else {
+                logger.log(Level.SEVERE, e, () -> "Beim Starten der Komponente \"" + component.getName() +
+                        "\" mit der ID " + id + " ist ein Fehler aufgetreten. Siehe folgende Fehlermeldung: ");
+            }
+        });
+    }
+
+    /**
+     * Stops the component on its own thread of the {@link ComponentExecutor}.
+     * @return Returns a future completing with the stop latency or exceptionally if the component could not be stopped.
+     */
+    public CompletableFuture<Duration> stopComponentAsync(int id){
+        Component component = findComponent(id);
+        if (component == null){
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown component id " + id));
+        }
+        Logger logger = getComponentLogger(component.getName());
+        return executor.stop(component, threadName(component, id, "stop")).whenComplete((latency, e) -> {
+            if (e == null) {
+                logger.info(() -> "Die Komponente \"" + component.getName() + "\" mit der ID " + id +
+                        " konnte erfolgreich gestoppt werden (" + latency.toMillis() + " ms).");
+            }
+            else {
+                logger.log(Level.SEVERE, e, () -> "Beim Stoppen der Komponente \"" + component.getName() +
+                        "\" mit der ID " + id + " ist ein Fehler aufgetreten. Siehe folgende Fehlermeldung: ");
+            }
+        });
+    }
+
+    /**
+     * Starts given component on behalf of a port request, if it is deployed but neither started nor starting.
+     * The request does not wait for the start method, because it may run for the whole lifetime of the component.
+     */
+    public void activateComponent(@NotNull Component component){
+        if (component.getState() != ComponentState.DEPLOYED || !activating.add(component)) return;
+
+        int id = registry.getId(component);
+        if (id < 0 || component.getState() != ComponentState.DEPLOYED){
+            activating.remove(component);
+            return;
+        }
+        getComponentLogger(component.getName()).info(() -> "Die Komponente \"" + component.getName() +
+                "\" mit der ID " + id + " wird aufgrund einer Portanfrage gestartet.");
+        startComponentAsync(id).whenComplete((latency, e) -> activating.remove(component));
+    }
+
+    /**
+     * Passivates all started components whose ports were not requested within the {@link #getIdleTimeout()}.
+     * Components without ports are never passivated, because no request could bring them back.
+     * @return Returns the amount of passivated components.
+     */
+    public int passivateIdleComponents(){
+        Duration timeout = idleTimeout;
+        if (timeout == null) return 0;
+
+        long now = System.nanoTime();
+        int passivated = 0;
+        for (int id : idsInState(ComponentState.STARTED)) {
+            Component component = registry.get(id);
+            if (component == null || activating.contains(component)) continue;
+            OptionalLong lastAccess = api.getLastAccessNanos(component);
+            if (lastAccess.isEmpty() || now - lastAccess.getAsLong() < timeout.toNanos()) continue;
+            if (passivateComponentById(id)) passivated++;
+        }
+        return passivated;
+    }
+
+    /**
+     * Stops the started component and replaces it by a fresh copy under the same ID which is deployed with lazy
+     * ports. The ports of the old component are removed, so it and its classloader can be garbage collected.
+     * @return Returns true if the component was passivated.
+     */
+    public boolean passivateComponentById(int id){
+        Component component = findComponent(id);
+        if (component == null) return false;
+        Logger logger = getComponentLogger(component.getName());
+        if (component.getState() != ComponentState.STARTED){
+            logger.warning(() -> "Die Komponente \"" + component.getName() + "\" mit der ID " + id +
+                    " kann nicht passiviert werden, da sie nicht gestartet ist.");
             return false;
         }
 
+        Component replacement = null;
         try {
-            Component component = components.get(id);
-            Thread thread = new Thread(() -> {
-                try {
-                    component.start();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            });
-            thread.start();
-            LOGGER.info("Die Komponente \"" + components.get(id).getName() + "\" mit der ID " + id +
-                    " konnte erfolgreich gestartet werden.");
-            return true;
+            replacement = Component.replicaOf(component);
+            // Staged until the replacement is registered, so a request cannot activate it before it has an ID
+            api.stagePorts(replacement);
+            // The metadata is reused, so this neither scans the jar nor instantiates any port
+            replacement.deploy(this, true);
         } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Beim Starten der Komponente \"" + components.get(id).getName() +
-                    "\" mit der ID " + id + " ist ein Fehler aufgetreten. Siehe folgende Fehlermeldung: ", e);
+            if (replacement != null){
+                api.discardStagedPorts(replacement);
+                replacement.unload();
+            }
+            logger.log(Level.SEVERE, e, () -> "Die Komponente \"" + component.getName() + "\" mit der ID " + id +
+                    " konnte nicht passiviert werden. Siehe folgende Fehlermeldung: ");
             return false;
         }
+        if (!registry.replace(id, component, replacement)){
+            api.discardStagedPorts(replacement);
+            // Otherwise its class loader would keep the jar open
+            replacement.unload();
+            return false;
+        }
+        drain(component, api.swapPorts(component, replacement));
+        forgetSharedReplicas(id);
+
+        try {
+            executor.stop(component, threadName(component, id, "stop")).join();
+            component.unload();
+        } catch (CompletionException e) {
+            logger.log(Level.SEVERE, e.getCause(), () -> "Beim Stoppen der passivierten Komponente \"" +
+                    component.getName() + "\" mit der ID " + id + " ist ein Fehler aufgetreten. Siehe folgende Fehlermeldung: ");
+        }
+        logger.info(() -> "Die Komponente \"" + component.getName() + "\" mit der ID " + id + " wurde passiviert.");
+        return true;
+    }
+
+    /**
+     * Redeploys all loaded, deployed or started components with given name from their jar file.
+     * @return Returns the amount of redeployed components.
+     */
+    public int redeployComponentsByName(String name){
+        int redeployed = 0;
+        for (int id : registry.getIdsByName(name)) {
+            if (redeployComponentById(id)) redeployed++;
+        }
+        return redeployed;
+    }
+
+    /**
+     * Replaces the component by a new version loaded from its jar file, keeping the ID and the state. The new version
+     * is deployed with eagerly created ports while the old one keeps serving requests. Then the ports of both
+     * versions are swapped in one write per port type, the new version is started if the old one was, and the old
+     * version is drained, stopped and unloaded.
+     * @return Returns true if the component was replaced.
+     */
+    public boolean redeployComponentById(int id){
+        Component component = findComponent(id);
+        if (component == null) return false;
+        Logger logger = getComponentLogger(component.getName());
+        ComponentState state = component.getState();
+        if (state != ComponentState.LOADED && state != ComponentState.DEPLOYED && state != ComponentState.STARTED){
+            logger.warning(() -> "Die Komponente \"" + component.getName() + "\" mit der ID " + id +
+                    " kann im Zustand " + state + " nicht neu deployt werden.");
+            return false;
+        }
+
+        Component replacement = null;
+        try {
+            replacement = new Component(component);
+            if (state != ComponentState.LOADED){
+                api.stagePorts(replacement);
+                // Eager ports, so the first requests after the swap do not pay for the instantiation
+                replacement.deploy(this, false);
+            }
+        } catch (Exception e) {
+            if (replacement != null){
+                api.discardStagedPorts(replacement);
+                replacement.unload();
+            }
+            logger.log(Level.SEVERE, e, () -> "Die neue Version der Komponente \"" + component.getName() +
+                    "\" mit der ID " + id + " konnte nicht deployt werden. Die alte Version bleibt aktiv. " +
+                    "Siehe folgende Fehlermeldung: ");
+            return false;
+        }
+        if (!registry.replace(id, component, replacement)){
+            api.discardStagedPorts(replacement);
+            replacement.unload();
+            return false;
+        }
+
+        List<PortInstance> removed = api.swapPorts(component, replacement);
+        forgetSharedReplicas(id);
+        if (state == ComponentState.STARTED) startComponentAsync(id);
+
+        drain(component, removed);
+        try {
+            if (component.getState() == ComponentState.STARTED){
+                executor.stop(component, threadName(component, id, "stop")).join();
+            }
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            logger.log(Level.SEVERE, cause, () -> "Beim Stoppen der alten Version der Komponente \"" +
+                    component.getName() + "\" mit der ID " + id + " ist ein Fehler aufgetreten. Sie wird trotzdem " +
+                    "entladen. Siehe folgende Fehlermeldung: ");
+        } finally {
+            // Its ports are swapped out already, so nothing can reach the old version anymore
+            component.unload();
+        }
+        logger.info(() -> "Die Komponente \"" + component.getName() + "\" mit der ID " + id + " wurde neu deployt.");
+        return true;
+    }
+
+    /**
+     * Scales the deployed or started component to {@code replicas} instances of its ports, counting the component
+     * itself. Replicas reuse its metadata, so the jar is not scanned again. If all ports of the component are
+     * {@link org.hbrs.ooka.uebung2.annotations.Stateless}, a replica is only a further set of port objects from the same
+     * class loader. Otherwise it is a component with its own class loader and ID, which is started if the scaled
+     * component is. All replicas added or removed by one call change the dispatch tables with a single write per port
+     * type, independent of their number.
+     * @return Returns the amount of instances after scaling or -1 if the component cannot be scaled.
+     */
+    public int scaleComponent(int id, int replicas){
+        if (replicas < 1) throw new IllegalArgumentException("Replicas must be at least 1 but was " + replicas);
+        synchronized (this.replicas){
+            return scale(id, replicas);
+        }
+    }
+
+    private int scale(int id, int replicas){
+        Component component = findComponent(id);
+        if (component == null) return -1;
+        ComponentMetadata metadata = component.getMetadata();
+        ComponentState state = component.getState();
+        if (metadata == null || (state != ComponentState.DEPLOYED && state != ComponentState.STARTED)){
+            getComponentLogger(component.getName()).warning(() -> "Die Komponente \"" + component.getName() +
+                    "\" mit der ID " + id + " kann im Zustand " + state + " nicht skaliert werden.");
+            return -1;
+        }
+
+        Deque<Replica> current = this.replicas.computeIfAbsent(id, key -> new ArrayDeque<>());
+        int missing = replicas - 1 - current.size();
+        try {
+            if (missing > 0 && metadata.isStateless()) addSharedReplicas(component, metadata, missing, current);
+            else if (missing > 0) addComponentReplicas(component, id, missing, current);
+            else if (missing < 0) removeReplicas(component, -missing, current);
+        } catch (Exception e) {
+            getComponentLogger(component.getName()).log(Level.SEVERE, e, () -> "Die Komponente \"" + component.getName() +
+                    "\" mit der ID " + id + " konnte nicht skaliert werden. Siehe folgende Fehlermeldung: ");
+        }
+        int instances = 1 + current.size();
+        if (current.isEmpty()) this.replicas.remove(id);
+        getComponentLogger(component.getName()).info(() -> "Die Komponente \"" + component.getName() +
+                "\" mit der ID " + id + " läuft mit " + instances + " Instanzen.");
+        return instances;
+    }
+
+    private void addSharedReplicas(Component component, ComponentMetadata metadata, int amount, Deque<Replica> current)
+            throws ReflectiveOperationException {
+        List<Class<?>> portClasses = new ArrayList<>();
+        for (String className : metadata.portClassNames()) portClasses.add(component.getClassLoader().loadClass(className));
+
+        List<Object> ports = new ArrayList<>(amount * portClasses.size());
+        for (int i = 0; i < amount; i++) {
+            for (Class<?> portClass : portClasses) ports.add(portClass.getDeclaredConstructor().newInstance());
+        }
+        List<PortInstance> added = api.addPortInstances(component, ports);
+        for (int i = 0; i < amount; i++) {
+            current.push(new Replica(-1, List.copyOf(added.subList(i * portClasses.size(), (i + 1) * portClasses.size()))));
+        }
+    }
+
+    private void addComponentReplicas(Component component, int id, int amount, Deque<Replica> current) {
+        List<Component> deployed = runBulk(Collections.nCopies(amount, component), original -> {
+            Component replica = null;
+            try {
+                replica = Component.replicaOf(original);
+                api.stagePorts(replica);
+                replica.deploy(this, false);
+                return replica;
+            } catch (Exception e) {
+                if (replica != null){
+                    api.discardStagedPorts(replica);
+                    replica.unload();
+                }
+                getComponentLogger(original.getName()).log(Level.SEVERE, e, () -> "Ein Replikat der Komponente \"" +
+                        original.getName() + "\" mit der ID " + id + " konnte nicht deployt werden. Siehe folgende Fehlermeldung: ");
+                return null;
+            }
+        }).stream().filter(Objects::nonNull).toList();
+
+        api.publishStagedPorts(deployed);
+        for (Component replica : deployed) {
+            int replicaId = registry.register(replica);
+            current.push(new Replica(replicaId, List.of()));
+            if (component.getState() == ComponentState.STARTED) startComponentAsync(replicaId);
+        }
+    }
+
+    private void removeReplicas(Component component, int amount, Deque<Replica> current) {
+        List<PortInstance> shared = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < amount && !current.isEmpty(); i++) {
+            Replica replica = current.pop();
+            if (replica.id() < 0) shared.addAll(replica.sharedInstances());
+            else ids.add(replica.id());
+        }
+
+        api.removePortInstances(shared);
+        drain(component, shared);
+        List<Component> components = ids.stream().map(registry::get).filter(Objects::nonNull).toList();
+        api.removePorts(components);
+        // The ports are gone already, so deleting only drains, stops and unloads
+        ids.forEach(this::deleteComponentById);
+    }
+
+    /**
+     * Forgets the replicas sharing the ports of the component with given ID, after its ports were replaced.
+     */
+    private void forgetSharedReplicas(int id){
+        synchronized (replicas){
+            replicas.computeIfPresent(id, (key, current) -> {
+                current.removeIf(replica -> replica.id() < 0);
+                return current.isEmpty() ? null : current;
+            });
+        }
+    }
+
+    private static String threadName(Component component, int id, String transition){
+        return "Komponente-" + id + "-" + component.getName() + "-" + transition;
     }
 
     public void listComponents(){
-        StringBuilder builder = new StringBuilder();
+        SortedMap<Integer, Component> components = registry.snapshot();
         if (components.isEmpty()){
             LOGGER.warning("Die Laufzeitumgebung hat keine Komponenten.");
             return;
         }
-        for (int i = 0; i < components.size(); i++){
-            Component component = components.get(i);
-            builder.append("ID: ").append(i).append(", Name: ").append(component.getName()).append(", Zustand: ").append(component.getState());
-            if (i < components.size() - 1) builder.append("\n");
-        }
-        LOGGER.info("Die Laufzeitumgebung hat folgende Komponenten: \n" + builder);
+        LOGGER.info(() -> {
+            StringJoiner joiner = new StringJoiner("\n");
+            components.forEach((id, component) -> joiner.add("ID: " + id + ", Name: " + component.getName() +
+                    ", Zustand: " + component.getState()));
+            return "Die Laufzeitumgebung hat folgende Komponenten: \n" + joiner;
+        });
     }
 
+    /**
+     * Stops the component and waits until its stop method returned.
+     * @return Returns true if the component could be stopped.
+     */
     public boolean stopComponentById(int id){
-        if (id < 0 || id >= components.size()){
-            LOGGER.warning("Eine Komponente mit der ID " + id + " konnte nicht gefunden werden.");
-            return false;
-        }
+        if (findComponent(id) == null) return false;
 
         try {
-            components.get(id).stop();
-            LOGGER.info("Die Komponente \"" + components.get(id).getName() + "\" mit der ID " + id +
-                    " konnte erfolgreich gestoppt werden.");
+            stopComponentAsync(id).join();
             return true;
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, "Beim Stoppen der Komponente \"" + components.get(id).getName() +
-                    "\" mit der ID " + id + " ist ein Fehler aufgetreten. Siehe folgende Fehlermeldung: ", e);
+        } catch (CompletionException e) {
+            // Already logged by stopComponentAsync
             return false;
         }
     }
 
     public boolean deleteComponentById(int id){
-        if (id < 0 || id >= components.size()){
-            LOGGER.warning("Eine Komponente mit der ID " + id + " konnte nicht gefunden werden.");
-            return false;
-        }
-
-        Component component = components.get(id);
+        Component component = findComponent(id);
+        if (component == null) return false;
 
         if (component.getState() == ComponentState.DELETED){
-            LOGGER.warning("Die Komponente \"" + component.getState() + "\" wurde schon gelöscht.");
+            getComponentLogger(component.getName()).warning(() -> "Die Komponente \"" + component.getName() +
+                    "\" wurde schon gelöscht.");
             return false;
         }
 
-        if (component.getState() == ComponentState.STARTED){
-            stopComponentById(id);
+        synchronized (replicas){
+            // Forgotten and deleted in one step, so no replica keeps running untracked
+            Deque<Replica> own = replicas.remove(id);
+            if (own != null) own.stream().filter(replica -> replica.id() >= 0).forEach(replica -> deleteComponentById(replica.id()));
+            replicas.values().removeIf(current -> {
+                current.removeIf(replica -> replica.id() == id);
+                return current.isEmpty();
+            });
         }
 
-        // TODO Delete from API
+        // New requests cannot reach the component anymore, running ones may finish before it is stopped
+        drain(component, api.removePorts(component));
+        if (component.getState() == ComponentState.STARTED && !stopComponentById(id)){
+            return false;
+        }
 
         component.delete();
-        components.remove(component);
+        registry.remove(id);
+        component.unload();
         return true;
     }
 
+    /**
+     * Waits up to {@link #DRAIN_TIMEOUT} until no call started via {@link IRuntimeEnvironmentAPI#invoke(Class, PortCall)}
+     * is running on given, already removed port instances anymore.
+     */
+    private static void drain(Component component, List<PortInstance> removed){
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        for (PortInstance instance : removed) {
+            while (instance.getInFlight() > 0) {
+                if (System.nanoTime() - deadline > 0){
+                    getComponentLogger(component.getName()).warning(() -> "Nicht alle laufenden Aufrufe der Komponente \"" +
+                            component.getName() + "\" wurden innerhalb von " + DRAIN_TIMEOUT.toMillis() + " ms beendet.");
+                    return;
+                }
+                LockSupport.parkNanos(DRAIN_POLL_NANOS);
+            }
+        }
+    }
+
+    private synchronized void closeLibraryClassLoader(){
+        if (libraryClassLoader == null) return;
+        try {
+            libraryClassLoader.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Die gemeinsamen Bibliotheken konnten nicht geschlossen werden.");
+        }
+        libraryClassLoader = null;
+    }
+
     public void shutdown(){
         LOGGER.info("Fahre Laufzeitumgebung herunter ...");
         if (!isRunning()){
@@ -208,8 +891,8 @@ public class RuntimeEnvironment {
         }
 
         boolean failed = false;
-        for (int i = 0; i < components.size() && components.get(i).getState() == ComponentState.STARTED; i++) {
-            boolean success = stopComponentById(i);
+        for (int id : idsInState(ComponentState.STARTED)) {
+            boolean success = stopComponentById(id);
             if (!success) failed = true;
         }
         if (failed){
@@ -218,7 +901,26 @@ public class RuntimeEnvironment {
         }
 
         running = false;
-        components.clear();
+        setIdleTimeout(null);
+        setHotRedeploy(false);
+        setAutoDiscovery(false);
+        registry.snapshot().values().forEach(component -> {
+            api.removePorts(component);
+            component.unload();
+        });
+        registry.clear();
+        // Also holds the entries of redeployed versions
+        metadataIndex.flush();
+        synchronized (replicas){
+            replicas.clear();
+        }
+        closeLibraryClassLoader();
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsObjectName);
+        } catch (JMException e) {
+            // Was not registered
+        }
         LOGGER.info("- - - Laufzeitumgebung erfolgreich heruntergefahren - - -");
+        LoggerUtil.flush();
     }
 }
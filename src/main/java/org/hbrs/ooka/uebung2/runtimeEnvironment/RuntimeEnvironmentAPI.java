@@ -1,41 +1,644 @@
 package org.hbrs.ooka.uebung2.runtimeEnvironment;
 
 import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.util.ExpiringLruCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.reflect.Method;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
  * API of the RuntimeEnvironment with Dispatching functionality.
- * TODO Refactor
+ * Ports are grouped by type in a {@link PortSlot}. The slot is looked up by {@link Class} first, so the hot path of
+ * {@link #getPort(Class)} neither allocates nor locks. Classes of the same port type loaded by another classloader
+ * are resolved once via the type name and then cached as an alias.
+ * Interfaces are resolved to the single port type implementing them and served through generated proxies, see
+ * {@link #getPort(Class)}. Calls on an interface only go to the instances implementing that very interface, so
+ * instances of a same-named port type from another class loader are skipped. The results of their {@link org.hbrs.ooka.uebung2.annotations.Cacheable} methods are
+ * cached per port type and dropped whenever instances of a component leave the port type.
  */
 public class RuntimeEnvironmentAPI implements IRuntimeEnvironmentAPI {
 
-    private HashMap<Component, String> componentToPortString = new HashMap<>();
-    private HashMap<String, Object> ports = new HashMap<>();
-    private HashMap<String, Integer> amounts = new HashMap<>();
-    private HashMap<String, Integer> nextDispatches = new HashMap<>();
+    private final ConcurrentHashMap<Class<?>, PortSlot> portsByClass = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PortSlot> portsByName = new ConcurrentHashMap<>();
+    private volatile boolean accessTracking = false;
+    private volatile PortInterceptor[] interceptors = new PortInterceptor[0];
+    /**
+     * Whether any port type has a bulkhead, so the proxies have to measure the duration of calls.
+     */
+    private volatile boolean bulkheads = false;
+    /**
+     * Proxies by port interface, see {@link #getPort(Class)}.
+     */
+    private final ConcurrentHashMap<Class<?>, Object> proxies = new ConcurrentHashMap<>();
+    /**
+     * Executors of {@link #invokeAsync(Class, PortCall)} by port type name. Like the slots they outlive redeploys, so
+     * their limits do too.
+     */
+    private final ConcurrentHashMap<String, PortExecutor> asyncExecutors = new ConcurrentHashMap<>();
+    /**
+     * Timer and threads of the {@link PortBatcher PortBatchers} of all proxies, created with the first batchable proxy.
+     */
+    @Nullable
+    private ScheduledExecutorService batchScheduler;
+    @Nullable
+    private ExecutorService batchWorkers;
+    /**
+     * Ports of components being redeployed, by component and port type name. They are not dispatched to before
+     * {@link #swapPorts(Component, Component)}. Keyed by identity, because the hash code of a component changes
+     * while it is deployed.
+     */
+    private final Map<Component, Map<String, List<PortInstance>>> staged =
+            Collections.synchronizedMap(new IdentityHashMap<>());
 
     public void addPort(Component component, Object port) {
-       String key = port.getClass().getName();
-       if (amounts.containsKey(key)) {
-           amounts.put(key, amounts.remove(key) + 1);
-       }
-       else {
-           amounts.put(key, 0);
-           nextDispatches.put(key, 0);
-       }
-       key = key + "_" + amounts.get(key);
-       componentToPortString.put(component, key);
-       ports.put(key, port);
+        PortSlot slot = portsByName.computeIfAbsent(port.getClass().getName(), PortSlot::new);
+        portsByClass.putIfAbsent(port.getClass(), slot);
+        register(component, slot.getTypeName(), new PortInstance(component, port));
+    }
+
+    /**
+     * Registers a port without creating it. The {@code factory} is called on the first request for the port, so the
+     * port class does not even have to be loaded before. See {@link RuntimeEnvironment#setLazyActivation(boolean)}.
+     * @param portTypeName Fully qualified class name of the port type.
+     */
+    public void addLazyPort(Component component, @NotNull String portTypeName, @NotNull Callable<Object> factory) {
+        register(component, portTypeName, new PortInstance(component, factory));
     }
 
-    //TODO Component Port Removal
+    private void register(Component component, String portTypeName, PortInstance instance) {
+        Map<String, List<PortInstance>> stagedPorts = staged.get(component);
+        if (stagedPorts != null) {
+            stagedPorts.computeIfAbsent(portTypeName, name -> new CopyOnWriteArrayList<>()).add(instance);
+        } else {
+            portsByName.computeIfAbsent(portTypeName, PortSlot::new).add(instance);
+        }
+    }
 
+    /**
+     * Holds back the ports the given component registers from now on until {@link #swapPorts(Component, Component)}
+     * or {@link #discardStagedPorts(Component)} is called.
+     */
+    public void stagePorts(@NotNull Component component) {
+        staged.put(component, new ConcurrentHashMap<>());
+    }
+
+    public void discardStagedPorts(@NotNull Component component) {
+        staged.remove(component);
+    }
+
+    /**
+     * Makes the staged ports of all given components available, with a single write per port type no matter how many
+     * components there are.
+     */
+    public void publishStagedPorts(@NotNull Collection<Component> components) {
+        Map<String, List<PortInstance>> additions = new HashMap<>();
+        for (Component component : components) {
+            Map<String, List<PortInstance>> stagedPorts = staged.remove(component);
+            if (stagedPorts == null) continue;
+            stagedPorts.forEach((typeName, instances) ->
+                    additions.computeIfAbsent(typeName, name -> new ArrayList<>()).addAll(instances));
+        }
+        additions.forEach((typeName, instances) ->
+                portsByName.computeIfAbsent(typeName, PortSlot::new).replace(instance -> false, instances));
+    }
+
+    /**
+     * Adds further instances of the ports of {@code component}, with a single write per port type.
+     * @return Returns the added instances.
+     */
+    public List<PortInstance> addPortInstances(@NotNull Component component, @NotNull List<Object> ports) {
+        Map<PortSlot, List<PortInstance>> additions = new HashMap<>();
+        List<PortInstance> added = new ArrayList<>(ports.size());
+        for (Object port : ports) {
+            PortSlot slot = portsByName.computeIfAbsent(port.getClass().getName(), PortSlot::new);
+            portsByClass.putIfAbsent(port.getClass(), slot);
+            PortInstance instance = new PortInstance(component, port);
+            additions.computeIfAbsent(slot, s -> new ArrayList<>()).add(instance);
+            added.add(instance);
+        }
+        additions.forEach((slot, instances) -> slot.replace(instance -> false, instances));
+        return added;
+    }
+
+    /**
+     * Removes the given instances, with a single write per port type.
+     */
+    public void removePortInstances(@NotNull Collection<PortInstance> instances) {
+        Set<PortInstance> toRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+        toRemove.addAll(instances);
+        for (PortSlot slot : portsByName.values()) {
+            slot.removeIf(toRemove::contains);
+        }
+    }
+
+    /**
+     * Replaces the port instances of {@code current} by the staged ones of {@code replacement}. Every port type is
+     * swapped in a single write, so requests are served by either version without interruption.
+     * @return Returns the removed instances of {@code current}.
+     */
+    public List<PortInstance> swapPorts(@NotNull Component current, @NotNull Component replacement) {
+        Map<String, List<PortInstance>> additions = staged.remove(replacement);
+        if (additions == null) additions = Map.of();
+
+        List<PortInstance> removed = new ArrayList<>();
+        for (Map.Entry<String, List<PortInstance>> entry : additions.entrySet()) {
+            PortSlot slot = portsByName.computeIfAbsent(entry.getKey(), PortSlot::new);
+            removed.addAll(slot.replace(instance -> instance.getComponent() == current, entry.getValue()));
+            // Results of the old version may differ from those of the new one
+            slot.clearResultCaches();
+        }
+        // Port types the new version does not offer anymore
+        for (PortSlot slot : portsByName.values()) {
+            if (!additions.containsKey(slot.getTypeName())) {
+                removeAndClear(slot, instance -> instance.getComponent() == current, removed);
+            }
+        }
+        portsByClass.keySet().removeIf(portClass -> portClass.getClassLoader() == current.getClassLoader());
+        proxies.keySet().removeIf(portInterface -> portInterface.getClassLoader() == current.getClassLoader());
+        return removed;
+    }
+
+    /**
+     * Removes all port instances of given component, including the cached aliases of its port classes and the cached
+     * results of its port types.
+     * @return Returns the removed instances.
+     */
+    public List<PortInstance> removePorts(@NotNull Component component) {
+        List<PortInstance> removed = new ArrayList<>();
+        for (PortSlot slot : portsByName.values()) {
+            removeAndClear(slot, instance -> instance.getComponent() == component, removed);
+        }
+        // The aliases would keep the classes and therefore the classloader of the component reachable
+        portsByClass.keySet().removeIf(portClass -> portClass.getClassLoader() == component.getClassLoader());
+        proxies.keySet().removeIf(portInterface -> portInterface.getClassLoader() == component.getClassLoader());
+        return removed;
+    }
+
+    private static void removeAndClear(PortSlot slot, Predicate<PortInstance> filter, List<PortInstance> removed) {
+        List<PortInstance> instances = slot.removeIf(filter);
+        if (instances.isEmpty()) return;
+        slot.clearResultCaches();
+        removed.addAll(instances);
+    }
+
+    /**
+     * Removes all port instances of the given components with a single write per port type. Used for replicas, so
+     * the cached results of their port types are kept.
+     * @return Returns the removed instances.
+     */
+    public List<PortInstance> removePorts(@NotNull Collection<Component> components) {
+        Set<Component> toRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+        toRemove.addAll(components);
+        Set<ClassLoader> loaders = Collections.newSetFromMap(new IdentityHashMap<>());
+        components.forEach(component -> loaders.add(component.getClassLoader()));
+
+        List<PortInstance> removed = new ArrayList<>();
+        for (PortSlot slot : portsByName.values()) {
+            removed.addAll(slot.removeIf(instance -> toRemove.contains(instance.getComponent())));
+        }
+        portsByClass.keySet().removeIf(portClass -> loaders.contains(portClass.getClassLoader()));
+        proxies.keySet().removeIf(portInterface -> loaders.contains(portInterface.getClassLoader()));
+        return removed;
+    }
+
+    /**
+     * Enables or disables recording the time of the last request per port instance. Enabling resets the times to now,
+     * so instances are not considered idle because of requests which were not tracked.
+     */
+    public void setAccessTracking(boolean enabled) {
+        if (enabled && !accessTracking) {
+            long now = System.nanoTime();
+            portsByName.values().forEach(slot -> {
+                for (PortInstance instance : slot.snapshot()) instance.markAccessed(now);
+            });
+        }
+        accessTracking = enabled;
+    }
+
+    /**
+     * @return Returns the {@link System#nanoTime()} of the last request for any port of given component or empty
+     * if the component has no ports.
+     */
+    public OptionalLong getLastAccessNanos(@NotNull Component component) {
+        OptionalLong last = OptionalLong.empty();
+        for (PortSlot slot : portsByName.values()) {
+            for (PortInstance instance : slot.snapshot()) {
+                if (instance.getComponent() != component) continue;
+                long access = instance.getLastAccessNanos();
+                if (last.isEmpty() || access - last.getAsLong() > 0) last = OptionalLong.of(access);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Sets the strategy used to choose between the instances of given port type. Strategies can be set before the
+     * first instance of the type is deployed.
+     * @param portTypeName Fully qualified class name of the port type.
+     * @param strategy A strategy object not used for any other port type. See {@link DispatchStrategies}.
+     */
+    public void setDispatchStrategy(@NotNull String portTypeName, @NotNull DispatchStrategy strategy) {
+        portsByName.computeIfAbsent(portTypeName, PortSlot::new).setStrategy(strategy);
+    }
+
+    public void setDispatchStrategy(@NotNull Class<?> portClass, @NotNull DispatchStrategy strategy) {
+        setDispatchStrategy(portClass.getName(), strategy);
+    }
+
+    /**
+     * @return Returns a snapshot of all instances of given port type. It is empty if none are registered.
+     */
+    public List<PortInstance> getPortInstances(@NotNull Class<?> portClass) {
+        PortSlot slot = portsByName.get(portClass.getName());
+        return slot == null ? List.of() : List.of(slot.snapshot());
+    }
+
+    /**
+     * @return Returns the amount of requests via {@link #getPort(Class)} and {@link #invoke(Class, PortCall)} per port
+     * type name since the runtime environment was created.
+     */
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        portsByName.forEach((name, slot) -> counts.put(name, slot.getRequestCount()));
+        return counts;
+    }
+
+    /**
+     * @return Returns the amount of calls currently running via {@link #invoke(Class, PortCall)} per port type name,
+     * one entry per instance in dispatch order.
+     */
+    public Map<String, List<Integer>> getInFlight() {
+        Map<String, List<Integer>> inFlight = new TreeMap<>();
+        portsByName.forEach((name, slot) -> {
+            PortInstance[] instances = slot.snapshot();
+            List<Integer> counts = new ArrayList<>(instances.length);
+            for (PortInstance instance : instances) counts.add(instance.getInFlight());
+            inFlight.put(name, counts);
+        });
+        return inFlight;
+    }
+
+    /**
+     * Puts a bulkhead around the calls of given port type via {@link #invoke(Class, PortCall)},
+     * {@link #invokeAsync(Class, PortCall)} and port proxies: calls beyond its adaptive concurrency limit fail right
+     * away with a {@link PortRejectedException} instead of tying up further threads. Requests via
+     * {@link #getPort(Class)} for a class are not calls and therefore not limited.
+     * The limit starts anew with every call of this method. Calls running meanwhile may be miscounted once.
+     * @param portTypeName Fully qualified class name of the port type.
+     * @param limits Null to remove the bulkhead.
+     */
+    public synchronized void setBulkhead(@NotNull String portTypeName, @Nullable BulkheadLimits limits) {
+        portsByName.computeIfAbsent(portTypeName, PortSlot::new)
+                .setBulkhead(limits == null ? null : new PortBulkhead(portTypeName, limits));
+        bulkheads = portsByName.values().stream().anyMatch(slot -> slot.getBulkhead() != null);
+    }
+
+    public void setBulkhead(@NotNull Class<?> portClass, @Nullable BulkheadLimits limits) {
+        setBulkhead(portClass.getName(), limits);
+    }
+
+    /**
+     * @return Returns the current concurrency limit per name of a port type with a bulkhead.
+     */
+    public Map<String, Integer> getConcurrencyLimits() {
+        Map<String, Integer> limits = new TreeMap<>();
+        portsByName.forEach((name, slot) -> {
+            PortBulkhead bulkhead = slot.getBulkhead();
+            if (bulkhead != null) limits.put(name, bulkhead.getLimit());
+        });
+        return limits;
+    }
+
+    /**
+     * @return Returns the amount of calls rejected by the bulkhead per name of a port type with a bulkhead.
+     */
+    public Map<String, Long> getBulkheadRejections() {
+        Map<String, Long> counts = new TreeMap<>();
+        portsByName.forEach((name, slot) -> {
+            PortBulkhead bulkhead = slot.getBulkhead();
+            if (bulkhead != null) counts.put(name, bulkhead.getRejectedCount());
+        });
+        return counts;
+    }
+
+    /**
+     * Drops all cached results of the {@link org.hbrs.ooka.uebung2.annotations.Cacheable} methods served by given
+     * port type.
+     * @param portTypeName Fully qualified class name of the port type.
+     */
+    public void invalidateCache(@NotNull String portTypeName) {
+        PortSlot slot = portsByName.get(portTypeName);
+        if (slot != null) slot.getResultCaches().values().forEach(ExpiringLruCache::invalidateAll);
+    }
+
+    /**
+     * Drops the result cached for a call of the method with given name and {@code arguments}.
+     * @param portTypeName Fully qualified class name of the port type.
+     */
+    public void invalidateCache(@NotNull String portTypeName, @NotNull String methodName, @NotNull List<?> arguments) {
+        PortSlot slot = portsByName.get(portTypeName);
+        if (slot == null) return;
+        List<Object> key = new ArrayList<>(arguments);
+        slot.getResultCaches().forEach((method, cache) -> {
+            if (method.getName().equals(methodName) && method.getParameterCount() == key.size()) cache.invalidate(key);
+        });
+    }
+
+    /**
+     * @return Returns the counters of the result caches per port type name and method, e.g. {@code Type.find(int)}.
+     */
+    public Map<String, ExpiringLruCache.Stats> getCacheStats() {
+        Map<String, ExpiringLruCache.Stats> stats = new TreeMap<>();
+        portsByName.forEach((name, slot) -> slot.getResultCaches().forEach((method, cache) -> {
+            StringJoiner parameters = new StringJoiner(", ", "(", ")");
+            for (Class<?> parameter : method.getParameterTypes()) parameters.add(parameter.getSimpleName());
+            stats.put(name + "." + method.getName() + parameters, cache.stats());
+        }));
+        return stats;
+    }
+
+    /**
+     * Called by the {@link PortResultCache} of a proxy on every call.
+     * @throws IllegalStateException if no port implementing {@code portInterface} is registered.
+     */
+    ExpiringLruCache<List<Object>, Object> resultCache(Class<?> portInterface, Method method) {
+        PortSlot slot = portsByClass.get(portInterface);
+        if (slot == null) slot = resolveSlot(portInterface);
+        return slot.resultCache(method);
+    }
+
+    /**
+     * Sets the limits of the calls of given port type via {@link #invokeAsync(Class, PortCall)}. Calls already
+     * submitted keep their timeout. Without limits set, {@link AsyncLimits#DEFAULT} applies.
+     * @param portTypeName Fully qualified class name of the port type.
+     */
+    public void setAsyncLimits(@NotNull String portTypeName, @NotNull AsyncLimits limits) {
+        asyncExecutor(portTypeName).setLimits(limits);
+    }
+
+    public void setAsyncLimits(@NotNull Class<?> portClass, @NotNull AsyncLimits limits) {
+        setAsyncLimits(portClass.getName(), limits);
+    }
+
+    /**
+     * @return Returns the amount of calls via {@link #invokeAsync(Class, PortCall)} waiting for a thread per port type
+     * name.
+     */
+    public Map<String, Integer> getAsyncQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        asyncExecutors.forEach((name, executor) -> depths.put(name, executor.getQueueDepth()));
+        return depths;
+    }
+
+    /**
+     * @return Returns the amount of calls via {@link #invokeAsync(Class, PortCall)} rejected because of a full queue
+     * per port type name.
+     */
+    public Map<String, Long> getAsyncRejections() {
+        Map<String, Long> counts = new TreeMap<>();
+        asyncExecutors.forEach((name, executor) -> counts.put(name, executor.getRejectedCount()));
+        return counts;
+    }
+
+    /**
+     * @return Returns the amount of calls via {@link #invokeAsync(Class, PortCall)} which timed out per port type name.
+     */
+    public Map<String, Long> getAsyncTimeouts() {
+        Map<String, Long> counts = new TreeMap<>();
+        asyncExecutors.forEach((name, executor) -> counts.put(name, executor.getTimedOutCount()));
+        return counts;
+    }
+
+    private PortExecutor asyncExecutor(String portTypeName) {
+        return asyncExecutors.computeIfAbsent(portTypeName,
+                name -> new PortExecutor(name, ComponentExecutor.defaultThreadFactory()));
+    }
+
+    /**
+     * Adds an interceptor to the calls made through port proxies. Interceptors are called in the order they were added.
+     */
+    public synchronized void addInterceptor(@NotNull PortInterceptor interceptor) {
+        PortInterceptor[] next = Arrays.copyOf(interceptors, interceptors.length + 1);
+        next[interceptors.length] = interceptor;
+        interceptors = next;
+    }
+
+    public synchronized void removeInterceptor(@NotNull PortInterceptor interceptor) {
+        interceptors = Arrays.stream(interceptors).filter(other -> other != interceptor).toArray(PortInterceptor[]::new);
+    }
+
+    /**
+     * @throws IllegalStateException if no instance of given port class is registered, or for an interface: if the
+     * proxy is called while no port or several port types implementing it are registered.
+     * @throws IllegalArgumentException if no proxy can be generated for given interface.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getPort(Class<T> portType) {
+        if (portType.isInterface()) {
+            return (T) proxies.computeIfAbsent(portType, type -> PortProxyGenerator.generate(this, type));
+        }
+        return (T) selectInstance(portType).getInstance();
+    }
+
+    synchronized ScheduledExecutorService batchScheduler() {
+        if (batchScheduler == null) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Port-Batching");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchScheduler;
+    }
+
+    /**
+     * Threads delivering batches. The threads end after a minute without batches.
+     */
+    synchronized ExecutorService batchWorkers() {
+        if (batchWorkers == null) {
+            AtomicInteger threads = new AtomicInteger();
+            batchWorkers = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "Port-Batch-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchWorkers;
+    }
+
+    /**
+     * Called by a proxy before every method call: chooses an instance accepted by all interceptors and counts the call
+     * in flight on it.
+     * @throws PortRejectedException if all instances were rejected or the bulkhead of the port type is full.
+     */
+    PortInstance enter(Class<?> portInterface, Method method) {
+        PortInterceptor[] chain = interceptors;
+        PortInstance instance = selectInstance(portInterface);
+        // Before the interceptors, so a rejection by the bulkhead never leaves their before hooks without after
+        PortBulkhead bulkhead = bulkheadOf(instance);
+        if (bulkhead != null) bulkhead.acquire();
+        if (chain.length > 0) {
+            // Every instance gets one chance before the call is rejected
+            PortSlot slot = portsByClass.get(portInterface);
+            int attempts = slot == null ? 1 : slot.size();
+            while (!accepts(chain, instance, method)) {
+                if (--attempts <= 0) {
+                    if (bulkhead != null) bulkhead.release(0, false);
+                    throw new PortRejectedException("Alle Instanzen des Ports " + portInterface.getName() +
+                            " wurden abgelehnt.");
+                }
+                instance = selectInstance(portInterface);
+            }
+        }
+        instance.acquire();
+        return instance;
+    }
+
+    private static @Nullable PortBulkhead bulkheadOf(PortInstance instance) {
+        PortSlot slot = instance.getSlot();
+        return slot == null ? null : slot.getBulkhead();
+    }
+
+    private static boolean accepts(PortInterceptor[] chain, PortInstance instance, Method method) {
+        for (PortInterceptor interceptor : chain) {
+            if (!interceptor.before(instance, method)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called by a proxy when a method call begins. Only reads the clock if there are interceptors or bulkheads to
+     * report to.
+     */
+    long startNanos() {
+        return interceptors.length == 0 && !bulkheads ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Called by a proxy after every method call which passed {@link #enter(Class, Method)}.
+     */
+    void exit(@Nullable Throwable failure, PortInstance instance, long startNanos, Method method) {
+        instance.release();
+        long nanos = startNanos == 0 ? 0 : System.nanoTime() - startNanos;
+        PortBulkhead bulkhead = bulkheadOf(instance);
+        if (bulkhead != null) bulkhead.release(nanos, failure != null);
+        PortInterceptor[] chain = interceptors;
+        if (chain.length == 0) return;
+        for (PortInterceptor interceptor : chain) interceptor.after(instance, method, nanos, failure);
+    }
+
+    /**
+     * @throws IllegalStateException if no instance of given {@code portClass} is registered.
+     * @throws PortRejectedException if the bulkhead of the port type is full.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <P, R> R invoke(Class<P> portClass, PortCall<P, R> call) throws Exception {
+        PortInstance instance = selectInstance(portClass);
+        PortBulkhead bulkhead = bulkheadOf(instance);
+        if (bulkhead == null) {
+            instance.acquire();
+            try {
+                return call.call((P) instance.getInstance());
+            } finally {
+                instance.release();
+            }
+        }
+
+        bulkhead.acquire();
+        instance.acquire();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            R result = call.call((P) instance.getInstance());
+            failed = false;
+            return result;
+        } finally {
+            instance.release();
+            bulkhead.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    /**
+     * Calls on an interface share the executor of the port type implementing it.
+     */
     @Override
-    public Object getPort(Class<?> portClass) {
-        int amount = amounts.get(portClass.getName());
-        int dispatch = nextDispatches.get(portClass.getName());
-        nextDispatches.put(portClass.getName(), (dispatch + 1) % (amount + 1));
-        return ports.get(portClass.getName() + "_" + dispatch);
+    public <P, R> CompletableFuture<R> invokeAsync(Class<P> portClass, PortCall<P, R> call) {
+        PortSlot slot = portsByClass.get(portClass);
+        try {
+            if (slot == null) slot = resolveSlot(portClass);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return asyncExecutor(slot.getTypeName()).submit(() -> invoke(portClass, call));
+    }
+
+    private PortInstance selectInstance(Class<?> portClass) {
+        PortSlot slot = portsByClass.get(portClass);
+        if (slot == null) slot = resolveSlot(portClass);
+        PortInstance instance = portClass.isInterface() ? slot.next(portClass) : slot.next();
+        if (instance == null && portClass.isInterface() && portsByClass.remove(portClass, slot)) {
+            // The implementing port type may have been undeployed while another one implements the interface now
+            return selectInstance(portClass);
+        }
+        if (instance == null) {
+            throw new IllegalStateException("Es ist kein Port vom Typ " + portClass.getName() + " registriert.");
+        }
+        if (accessTracking) instance.markAccessed(System.nanoTime());
+        return instance;
+    }
+
+    private PortSlot resolveSlot(Class<?> portClass) {
+        PortSlot slot = portsByName.get(portClass.getName());
+        if (slot == null && portClass.isInterface()) slot = findImplementingSlot(portClass);
+        if (slot == null) {
+            throw new IllegalStateException("Es ist kein Port vom Typ " + portClass.getName() + " registriert.");
+        }
+        PortSlot previous = portsByClass.putIfAbsent(portClass, slot);
+        return previous != null ? previous : slot;
+    }
+
+    /**
+     * @return Returns the port type with instances implementing given interface or null if there is none.
+     * @throws IllegalStateException if several port types implement it, since the choice would be arbitrary.
+     */
+    private @Nullable PortSlot findImplementingSlot(Class<?> portInterface) {
+        PortSlot found = null;
+        for (PortSlot slot : portsByName.values()) {
+            // Lazily registered ports are neither created nor initialized by the check
+            if (!slot.hasInstanceOf(portInterface)) continue;
+            if (found != null) {
+                String first = found.getTypeName();
+                throw new IllegalStateException("Der Port " + portInterface.getName() + " ist nicht eindeutig, er wird " +
+                        "von " + (first.compareTo(slot.getTypeName()) < 0 ? first + " und " + slot.getTypeName() :
+                        slot.getTypeName() + " und " + first) + " implementiert.");
+            }
+            found = slot;
+        }
+        return found;
     }
 }
@@ -0,0 +1,109 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import lombok.Getter;
+import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.component.DeployTimings;
+import org.hbrs.ooka.uebung2.util.ExpiringLruCache;
+import org.hbrs.ooka.uebung2.util.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metrics of one {@link RuntimeEnvironment}. Durations and request counts are recorded on the fly into striped
+ * counters, everything else is computed when read. Is read via {@link RuntimeEnvironment#getMetrics()} or as MXBean
+ * under {@link RuntimeEnvironment#getMetricsObjectName()} while the runtime environment is running.
+ */
+public class RuntimeMetrics implements RuntimeMetricsMXBean {
+    private final RuntimeEnvironment re;
+    @Getter
+    private final LatencyHistogram deployLatencies = new LatencyHistogram();
+
+    RuntimeMetrics(@NotNull RuntimeEnvironment re) {
+        this.re = re;
+    }
+
+    /**
+     * Records the duration of a successful deployment.
+     */
+    public void recordDeploy(@NotNull DeployTimings timings) {
+        deployLatencies.record(timings.scanNanos() + timings.loadNanos() + timings.instantiationNanos());
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getDeployLatency() {
+        return deployLatencies.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getStartLatency() {
+        return re.getExecutor().getStartLatencies().snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getStopLatency() {
+        return re.getExecutor().getStopLatencies().snapshot();
+    }
+
+    @Override
+    public Map<String, Long> getPortRequests() {
+        return re.getApi().getRequestCounts();
+    }
+
+    @Override
+    public Map<String, List<Integer>> getPortInFlight() {
+        return re.getApi().getInFlight();
+    }
+
+    @Override
+    public Map<String, Integer> getPortQueueDepth() {
+        return re.getApi().getAsyncQueueDepths();
+    }
+
+    @Override
+    public Map<String, Long> getPortAsyncRejections() {
+        return re.getApi().getAsyncRejections();
+    }
+
+    @Override
+    public Map<String, Long> getPortAsyncTimeouts() {
+        return re.getApi().getAsyncTimeouts();
+    }
+
+    @Override
+    public Map<String, Integer> getPortConcurrencyLimit() {
+        return re.getApi().getConcurrencyLimits();
+    }
+
+    @Override
+    public Map<String, Long> getPortBulkheadRejections() {
+        return re.getApi().getBulkheadRejections();
+    }
+
+    @Override
+    public Map<String, ExpiringLruCache.Stats> getPortCaches() {
+        return re.getApi().getCacheStats();
+    }
+
+    @Override
+    public int getComponentCount() {
+        return re.getRegistry().size();
+    }
+
+    @Override
+    public int getClassLoaderCount() {
+        Set<ClassLoader> loaders = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Component component : re.getRegistry().snapshot().values()) loaders.add(component.getClassLoader());
+        return loaders.size() + (re.isLibraryClassLoaderOpen() ? 1 : 0);
+    }
+
+    @Override
+    public int getLoadedClassCount() {
+        return ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+    }
+}
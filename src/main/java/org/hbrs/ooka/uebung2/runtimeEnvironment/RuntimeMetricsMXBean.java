@@ -0,0 +1,59 @@
+package org.hbrs.ooka.uebung2.runtimeEnvironment;
+
+import org.hbrs.ooka.uebung2.util.ExpiringLruCache;
+import org.hbrs.ooka.uebung2.util.LatencyHistogram;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of {@link RuntimeMetrics}. As an MXBean it only uses open types, so every JMX client such as
+ * JConsole or a JMX exporter can read it without the classes of the runtime environment.
+ */
+public interface RuntimeMetricsMXBean {
+    LatencyHistogram.Snapshot getDeployLatency();
+
+    LatencyHistogram.Snapshot getStartLatency();
+
+    LatencyHistogram.Snapshot getStopLatency();
+
+    /**
+     * @return Returns the monotonically increasing amount of port requests per port type, the rate is its derivative.
+     */
+    Map<String, Long> getPortRequests();
+
+    Map<String, List<Integer>> getPortInFlight();
+
+    /**
+     * @return Returns the amount of asynchronous port calls waiting for a thread per port type.
+     */
+    Map<String, Integer> getPortQueueDepth();
+
+    Map<String, Long> getPortAsyncRejections();
+
+    Map<String, Long> getPortAsyncTimeouts();
+
+    /**
+     * @return Returns the current adaptive concurrency limit per port type with a bulkhead.
+     */
+    Map<String, Integer> getPortConcurrencyLimit();
+
+    Map<String, Long> getPortBulkheadRejections();
+
+    /**
+     * @return Returns the counters of the result caches per port type and cached method.
+     */
+    Map<String, ExpiringLruCache.Stats> getPortCaches();
+
+    int getComponentCount();
+
+    /**
+     * @return Returns the amount of open class loaders of components plus the one of the shared libraries.
+     */
+    int getClassLoaderCount();
+
+    /**
+     * @return Returns the amount of classes currently loaded by the JVM.
+     */
+    int getLoadedClassCount();
+}
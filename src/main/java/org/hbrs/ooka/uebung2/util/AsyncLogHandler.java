@@ -0,0 +1,235 @@
+package org.hbrs.ooka.uebung2.util;
+
+import lombok.Getter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler which hands records over to a single writer thread through a bounded, lock-free ring buffer.
+ * The writer formats the records and writes them in batches, so logging threads neither format nor block on the stream.
+ * If the buffer is full, the {@link OverflowPolicy} decides whether the logging thread waits or the record is dropped.
+ */
+public class AsyncLogHandler extends Handler {
+    public enum OverflowPolicy {
+        /**
+         * The logging thread waits until the writer has made room. No record is lost.
+         */
+        BLOCK,
+        /**
+         * The record is dropped and counted. The writer reports the amount of dropped records.
+         */
+        DROP
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int BATCH_SIZE = 256;
+
+    private final Writer out;
+    @Getter
+    private final OverflowPolicy overflowPolicy;
+    private final Thread writer;
+
+    // Ring buffer for many producers and one consumer: a slot may be written when its sequence equals the claimed
+    // position and read when it equals position + 1.
+    private final LogRecord[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private volatile long written;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDrops;
+    private final AtomicBoolean writerParked = new AtomicBoolean();
+    private volatile boolean closed;
+    private final StringBuilder batch = new StringBuilder(8192);
+
+    /**
+     * @param capacity Amount of records the buffer can hold. Is rounded up to the next power of two.
+     */
+    public AsyncLogHandler(OutputStream out, Formatter formatter, int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1 but was " + capacity);
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        this.overflowPolicy = overflowPolicy;
+        setFormatter(formatter);
+
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new LogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        this.mask = size - 1;
+
+        this.writer = new Thread(this::drainLoop, "LoggerUtil-Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return Returns the amount of records dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) return;
+
+        while (!offer(record)) {
+            if (closed) {
+                writeDirectly(record);
+                return;
+            }
+            if (overflowPolicy == OverflowPolicy.DROP) {
+                dropped.incrementAndGet();
+                return;
+            }
+            wakeWriter();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        if (closed) {
+            // The writer may already have stopped, so the caller drains the buffer itself
+            drainBatch();
+        } else if (writerParked.get()) {
+            wakeWriter();
+        }
+    }
+
+    private void writeDirectly(LogRecord record) {
+        synchronized (batch) {
+            append(record);
+            writeBatch();
+        }
+    }
+
+    private boolean offer(LogRecord record) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff < 0) return false;
+            if (diff == 0 && tail.compareAndSet(pos, pos + 1)) {
+                slots[index] = record;
+                sequences.lazySet(index, pos + 1);
+                return true;
+            }
+        }
+    }
+
+    private LogRecord poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) return null;
+        LogRecord record = slots[index];
+        slots[index] = null;
+        sequences.lazySet(index, head + slots.length);
+        head++;
+        return record;
+    }
+
+    private void wakeWriter() {
+        if (writerParked.compareAndSet(true, false)) LockSupport.unpark(writer);
+    }
+
+    private void drainLoop() {
+        while (true) {
+            int count = drainBatch();
+            if (count > 0) continue;
+            if (closed && tail.get() == head) return;
+
+            writerParked.set(true);
+            // Re-check after announcing the park, otherwise a record published in between could wait a full period
+            if (tail.get() == head) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            writerParked.set(false);
+        }
+    }
+
+    private int drainBatch() {
+        int count = 0;
+        // Only contended after close(), when logging threads drain the buffer themselves
+        synchronized (batch) {
+            LogRecord record;
+            while (count < BATCH_SIZE && (record = poll()) != null) {
+                append(record);
+                count++;
+            }
+            long lost = dropped.get() - reportedDrops;
+            reportedDrops += lost;
+            if (lost > 0) {
+                batch.append(lost).append(" Log-Einträge wurden verworfen, da der Puffer voll war.")
+                        .append(System.lineSeparator());
+            }
+            if (count > 0 || lost > 0) writeBatch();
+            written = head;
+        }
+        return count;
+    }
+
+    private void append(LogRecord record) {
+        try {
+            if (getFormatter() instanceof LoggerUtil.ConsoleFormatter formatter) {
+                formatter.formatTo(record, batch);
+            } else {
+                batch.append(getFormatter().format(record));
+            }
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    private void writeBatch() {
+        try {
+            out.append(batch);
+            out.flush();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        } finally {
+            batch.setLength(0);
+        }
+    }
+
+    /**
+     * Waits until all records published before this call have been written.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (written < target && writer.isAlive()) {
+            wakeWriter();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * Writes all buffered records and stops the writer thread. Records published afterwards are written directly.
+     */
+    @Override
+    public void close() {
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainBatch();
+    }
+}
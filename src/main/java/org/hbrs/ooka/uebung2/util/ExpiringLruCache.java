@@ -0,0 +1,176 @@
+package org.hbrs.ooka.uebung2.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache evicting the least recently used entry, whose entries also expire a fixed time after they were put.
+ * The entries are split by hash into up to {@value #SEGMENTS} segments of at least {@value #MIN_SEGMENT_SIZE} entries
+ * with a lock each, so concurrent readers of different keys rarely wait for each other. The recency order is kept per
+ * segment, therefore the evicted entry is the least recently used one of its segment, and the size bound holds
+ * exactly.
+ */
+public class ExpiringLruCache<K, V> {
+    private static final int SEGMENTS = 16;
+    /**
+     * Smaller segments would make the order per segment a poor approximation of the global one.
+     */
+    private static final int MIN_SEGMENT_SIZE = 64;
+
+    private final Segment<K, V>[] segments;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpiringLruCache(int maxSize, @NotNull Duration ttl) {
+        if (maxSize < 1) throw new IllegalArgumentException("Max size must be at least 1 but was " + maxSize);
+        if (ttl.isNegative() || ttl.isZero()) throw new IllegalArgumentException("TTL must be positive but was " + ttl);
+        this.ttlNanos = ttl.toNanos();
+        int count = Math.max(1, Math.min(SEGMENTS, maxSize / MIN_SEGMENT_SIZE));
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[count];
+        for (int i = 0; i < count; i++) segments[i] = new Segment<>(maxSize / count + (i < maxSize % count ? 1 : 0), evictions);
+        this.segments = segments;
+    }
+
+    /**
+     * @return Returns the value cached for {@code key} or null if there is none or it expired.
+     */
+    public @Nullable V get(@NotNull K key) {
+        Segment<K, V> segment = segmentOf(key);
+        long now = System.nanoTime();
+        synchronized (segment) {
+            Entry<V> entry = segment.get(key);
+            if (entry != null && now - entry.expiresAtNanos < 0) {
+                hits.increment();
+                return entry.value;
+            }
+            if (entry != null) segment.remove(key);
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(@NotNull K key, @NotNull V value) {
+        Segment<K, V> segment = segmentOf(key);
+        Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos);
+        synchronized (segment) {
+            segment.put(key, entry);
+        }
+    }
+
+    public void invalidate(@NotNull K key) {
+        Segment<K, V> segment = segmentOf(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * @return Returns the amount of entries, including expired ones not removed yet.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size());
+    }
+
+    private Segment<K, V> segmentOf(K key) {
+        int hash = key.hashCode();
+        // Spread the high bits, since small key sets often differ in the low ones only
+        return segments[Math.floorMod(hash ^ (hash >>> 16), segments.length)];
+    }
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, Entry<V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Segment(int capacity, LongAdder evictions) {
+            // Access order, so the eldest entry is the least recently used one
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+            if (size() <= capacity) return false;
+            evictions.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Counters of a cache. The getters make it an open type, so JMX clients see it as composite data.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int size;
+
+        private Stats(long hits, long misses, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return Returns the share of lookups finding a value, or 0 if there were none.
+         */
+        public double getHitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Treffer %d, Fehlschläge %d, Trefferquote %.2f, Verdrängt %d, Größe %d",
+                    hits, misses, getHitRate(), evictions, size);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.hbrs.ooka.uebung2.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * This class resolves {@link Method Methods} once into fast invokers, so repeated calls avoid the access checks
+ * and argument boxing of {@link Method#invoke(Object, Object...)}. Only the lifecycle methods of components are called
+ * this way; port methods are called directly or through the proxies of the runtime environment.
+ */
+public class Invokers {
+
+    private Invokers() {
+    }
+
+    /**
+     * Invoker of a static method without parameters. The result of the method is discarded.
+     */
+    @FunctionalInterface
+    public interface StaticInvoker {
+        void invoke() throws Throwable;
+    }
+
+    /**
+     * @param method Static method without parameters.
+     * @return Returns an invoker backed by an exactly typed {@link MethodHandle}.
+     * <i>({@link LambdaMetafactory} is not an option here: the spun class would be defined in the class loader of
+     * the runtime, which cannot see component classes.)</i>
+     */
+    public static StaticInvoker staticInvoker(@NotNull Method method) {
+        if (!Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0) {
+            throw new IllegalArgumentException("Method " + method + " has to be static and without parameters.");
+        }
+        final MethodHandle handle = unreflect(method).asType(MethodType.methodType(void.class));
+        return () -> {
+            handle.invokeExact();
+        };
+    }
+
+    /**
+     * Rethrows given {@code throwable} thrown by an invoker as {@link Exception}, wrapping it if necessary.
+     */
+    public static Exception asException(@NotNull Throwable throwable) {
+        if (throwable instanceof Error error) throw error;
+        if (throwable instanceof Exception exception) return exception;
+        return new IllegalStateException(throwable);
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            method.setAccessible(true);
+            try {
+                return MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalArgumentException("Method " + method + " is not accessible.", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.hbrs.ooka.uebung2.util;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds with log-linear buckets like an HDR histogram: every power of two is split
+ * into {@value #SUB_BUCKETS} buckets, so a reported percentile is off by at most 1/{@value #SUB_BUCKETS} of the value.
+ * Recording only increments striped counters, so it neither allocates nor locks and scales with concurrent writers.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS);
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+    }
+
+    /**
+     * @param nanos Negative durations are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets[bucketIndex(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + ((int) (value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return Returns the middle of the values falling into the bucket with given index.
+     */
+    static long bucketValue(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * @return Returns a consistent view of the histogram. Records made while it is taken may be partly included.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Immutable state of a histogram. The getters make it an open type, so JMX clients see it as composite data.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : sumNanos / 1e6 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        public double getP50Millis() {
+            return percentileNanos(50) / 1e6;
+        }
+
+        public double getP90Millis() {
+            return percentileNanos(90) / 1e6;
+        }
+
+        public double getP99Millis() {
+            return percentileNanos(99) / 1e6;
+        }
+
+        /**
+         * @param percentile Between 0 and 100.
+         * @return Returns the value in nanoseconds below or at which {@code percentile} percent of the records are,
+         * or 0 if nothing was recorded.
+         */
+        public long percentileNanos(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100 but was " + percentile);
+            }
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            // The largest record is known exactly
+            if (rank >= count) return maxNanos;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                // The bucket middle may lie above the largest record
+                if (seen >= rank) return Math.min(bucketValue(i), maxNanos);
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Anzahl %d, Mittel %.2f ms, p50 %.2f ms, p99 %.2f ms, Max %.2f ms",
+                    count, getMeanMillis(), getP50Millis(), getP99Millis(), getMaxMillis());
+        }
+    }
+}
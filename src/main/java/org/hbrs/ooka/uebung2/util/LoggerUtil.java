@@ -4,58 +4,162 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.*;
 
+/**
+ * Central logging configuration. Every logger is configured once and shares one console handler.
+ * Levels are set per logger name, either at runtime via {@link #setLevel(String, Level)} or with the system
+ * properties {@value #LEVEL_PROPERTY} (default for all loggers, {@code ALL} if unset) and
+ * {@value #LEVEL_PROPERTY}.&lt;name&gt;.
+ */
 public class LoggerUtil {
-    public static SimpleDateFormat sdf = new SimpleDateFormat("dd.MM.yy HH:mm:ss");
+    public static final String LEVEL_PROPERTY = "ooka.log.level";
+    /**
+     * Thread-safe, in contrast to the former {@link java.text.SimpleDateFormat}, so it can be shared by all loggers.
+     */
+    public static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd.MM.yy HH:mm:ss").withZone(ZoneId.systemDefault());
+    /**
+     * Amount of records the console handler buffers before its {@link AsyncLogHandler.OverflowPolicy} applies.
+     */
+    public static final int BUFFER_CAPACITY = 8192;
+
+    private static final AsyncLogHandler CONSOLE_HANDLER =
+            new AsyncLogHandler(System.out, new ConsoleFormatter(), BUFFER_CAPACITY, AsyncLogHandler.OverflowPolicy.BLOCK);
+
+    /**
+     * Holds every configured logger strongly, because the {@link LogManager} only keeps weak references and a
+     * collected logger would lose its level.
+     */
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+    private static final Map<String, Level> LEVELS = new ConcurrentHashMap<>();
+    private static volatile Level defaultLevel = parseLevel(System.getProperty(LEVEL_PROPERTY), Level.ALL);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(LoggerUtil::shutdown, "LoggerUtil-Shutdown"));
+    }
+
+    /**
+     * @return Returns the logger named after the simple name of {@code clazz}. Repeated calls return the same,
+     * already configured logger, so the console handler is registered only once.
+     */
     public static Logger getLogger(Class<?> clazz){
-        Logger logger = Logger.getLogger(clazz.getSimpleName());
-        logger.setUseParentHandlers(false);
-        logger.setLevel(Level.ALL);
-        logger.addHandler(new SynchronizedConsoleHandler(new Formatter() {
-            @Override
-            public String format(LogRecord record) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(sdf.format(new Date(record.getMillis())))
-                        .append(": [")
-                        .append(record.getLoggerName())
-                        .append("]")
-                        .append(" (")
-                        .append(record.getLevel())
-                        .append(") ")
-                        .append(record.getMessage())
-                        .append(System.lineSeparator());
-
-                @Nullable Throwable e = record.getThrown();
-                if (e != null){
-                    StringWriter sw = new StringWriter();
-                    PrintWriter pw = new PrintWriter(sw);
-                    e.printStackTrace(pw);
-                    sb.append(System.lineSeparator()).append(sw).append(System.lineSeparator());
-                }
-
-                return sb.toString();
-            }
-        }));
-        return logger;
+        return LOGGERS.computeIfAbsent(clazz.getSimpleName(), name -> {
+            Logger logger = Logger.getLogger(name);
+            logger.setUseParentHandlers(false);
+            logger.setLevel(configuredLevel(name, defaultLevel));
+            logger.addHandler(CONSOLE_HANDLER);
+            return logger;
+        });
     }
 
-    private static class SynchronizedConsoleHandler extends StreamHandler {
-        public SynchronizedConsoleHandler(Formatter formatter) {
-            super(System.out, formatter);
+    /**
+     * Returns a child logger named {@code <parent>.<child>}, e.g. one per component. It writes through the handler of
+     * its parent and inherits the parent's level, unless a level is configured for the child.
+     */
+    public static Logger getLogger(Logger parent, String child){
+        return LOGGERS.computeIfAbsent(parent.getName() + "." + child, name -> {
+            Logger logger = Logger.getLogger(name);
+            logger.setParent(parent);
+            logger.setLevel(configuredLevel(name, null));
+            return logger;
+        });
+    }
+
+    /**
+     * Sets the level of the logger with given {@code name}, including loggers which are created later.
+     * @param level The new level or null to reset the logger to its default.
+     */
+    public static void setLevel(String name, @Nullable Level level){
+        if (level == null) LEVELS.remove(name);
+        else LEVELS.put(name, level);
+
+        Logger logger = LOGGERS.get(name);
+        if (logger != null){
+            // Child loggers have a parent with handlers and fall back to its level
+            boolean child = logger.getUseParentHandlers();
+            logger.setLevel(configuredLevel(name, child ? null : defaultLevel));
         }
+    }
 
-        @Override
-        public synchronized void publish(LogRecord record) {
-            super.publish(record);
-            flush();
+    /**
+     * Sets the level of all loggers without a level of their own.
+     */
+    public static void setDefaultLevel(Level level){
+        defaultLevel = level;
+        LOGGERS.forEach((name, logger) -> {
+            if (!logger.getUseParentHandlers()) logger.setLevel(configuredLevel(name, level));
+        });
+    }
+
+    public static Level getDefaultLevel(){
+        return defaultLevel;
+    }
+
+    private static @Nullable Level configuredLevel(String name, @Nullable Level fallback){
+        Level level = LEVELS.get(name);
+        if (level != null) return level;
+        return parseLevel(System.getProperty(LEVEL_PROPERTY + "." + name), fallback);
+    }
+
+    private static @Nullable Level parseLevel(@Nullable String value, @Nullable Level fallback){
+        if (value == null || value.isBlank()) return fallback;
+        try {
+            return Level.parse(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unbekanntes Log-Level \"" + value + "\", verwende " + fallback + ".");
+            return fallback;
         }
+    }
+
+    /**
+     * Waits until all records logged so far have been written to the console.
+     */
+    public static void flush(){
+        CONSOLE_HANDLER.flush();
+    }
 
+    /**
+     * Writes all buffered records and stops the writer thread. Later records are written by the logging thread itself.
+     * Is called automatically when the JVM shuts down.
+     */
+    public static void shutdown(){
+        CONSOLE_HANDLER.close();
+    }
+
+    static class ConsoleFormatter extends Formatter {
         @Override
-        public synchronized void close() {
-            flush();
+        public String format(LogRecord record) {
+            StringBuilder sb = new StringBuilder();
+            formatTo(record, sb);
+            return sb.toString();
+        }
+
+        /**
+         * Appends the formatted record to {@code sb}, so the writer can reuse one builder for a whole batch.
+         */
+        void formatTo(LogRecord record, StringBuilder sb) {
+            DATE_FORMAT.formatTo(record.getInstant(), sb);
+            sb.append(": [")
+                    .append(record.getLoggerName())
+                    .append("]")
+                    .append(" (")
+                    .append(record.getLevel())
+                    .append(") ")
+                    .append(record.getMessage())
+                    .append(System.lineSeparator());
+
+            @Nullable Throwable e = record.getThrown();
+            if (e != null){
+                StringWriter sw = new StringWriter();
+                PrintWriter pw = new PrintWriter(sw);
+                e.printStackTrace(pw);
+                sb.append(System.lineSeparator()).append(sw).append(System.lineSeparator());
+            }
         }
     }
 }
@@ -2,26 +2,72 @@ package org.hbrs.ooka.uebung2.util;
 
 import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * This class offers an interface to work with {@code java.lang.reflect} Reflections.
+ * Fields, methods and constructors of a class are collected once and cached in a {@link ClassValue}, so the cache
+ * of a class is released together with its class loader.
  *
  * @author Militalex
- * @version 2.5.1
+ * @version 2.6.0
  */
 public class Reflector {
 
+    private static final ClassValue<MemberTable<Field>> FIELDS = new ClassValue<>() {
+        @Override
+        protected MemberTable<Field> computeValue(Class<?> type) {
+            return MemberTable.of(collectAllFields(type), Field::getName);
+        }
+    };
+
+    private static final ClassValue<MemberTable<Method>> METHODS = new ClassValue<>() {
+        @Override
+        protected MemberTable<Method> computeValue(Class<?> type) {
+            final Set<Method> methods = new LinkedHashSet<>(List.of(type.getMethods()));
+            methods.addAll(List.of(type.getDeclaredMethods()));
+            methods.forEach(method -> method.setAccessible(true));
+            return MemberTable.of(List.copyOf(methods), Method::getName);
+        }
+    };
+
+    private static final ClassValue<List<Constructor<?>>> CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected List<Constructor<?>> computeValue(Class<?> type) {
+            final Constructor<?>[] constructors = type.getDeclaredConstructors();
+            for (Constructor<?> constructor : constructors) constructor.setAccessible(true);
+            return List.of(constructors);
+        }
+    };
+
+    /**
+     * All members of one kind of a class, additionally grouped by name.
+     */
+    private record MemberTable<M>(List<M> all, Map<String, List<M>> byName) {
+        static <M> MemberTable<M> of(List<M> all, Function<M, String> nameOf) {
+            final Map<String, List<M>> byName = new HashMap<>();
+            for (M member : all) byName.computeIfAbsent(nameOf.apply(member), name -> new ArrayList<>(1)).add(member);
+            byName.replaceAll((name, members) -> List.copyOf(members));
+            return new MemberTable<>(all, byName);
+        }
+
+        List<M> named(String name) {
+            return byName.getOrDefault(name, List.of());
+        }
+    }
+
     /**
      * @param clazz Class where field might be offered or inherited.
      * @param name Name of field.
      * @return Returns true if field with given {@code name} in given {@code clazz} exists. This includes inherited fields.
      */
     public static boolean containsField(@NotNull Class<?> clazz, @NotNull String name){
-        return getAllFields(clazz).stream().map(Field::getName).collect(Collectors.toSet()).contains(name);
+        return FIELDS.get(clazz).byName().containsKey(name);
     }
 
     /**
@@ -30,7 +76,7 @@ public class Reflector {
      * @return Returns true if constructor with given {@code parameterTypes} in given {@code clazz} exists.
      */
     public static boolean containsConstructor(@NotNull Class<?> clazz, @NotNull Class<?>... parameterTypes){
-        for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+        for (Constructor<?> constructor : CONSTRUCTORS.get(clazz)) {
             if (isCompatible(constructor.getParameterTypes(), parameterTypes)) return true;
         }
         return false;
@@ -42,7 +88,7 @@ public class Reflector {
      * @return Returns true if method with given {@code name} exists in given {@code clazz}. It also searches in inherited methods.
      */
     public static boolean containsMethod(@NotNull Class<?> clazz, @NotNull String name){
-        return getAllMethods(clazz).stream().map(Method::getName).toList().contains(name);
+        return METHODS.get(clazz).byName().containsKey(name);
     }
 
     /**
@@ -53,10 +99,7 @@ public class Reflector {
      * It also searches in inherited methods.
      */
     public static boolean containsMethod(@NotNull Class<?> clazz, @NotNull String name, @NotNull Class<?>... parameterTypes){
-        for (Method method : getAllMethods(clazz)) {
-            if (method.getName().equals(name) && isCompatible(method.getParameterTypes(), parameterTypes)) return true;
-        }
-        return false;
+        return findMethod(clazz, name, parameterTypes) != null;
     }
 
     /**
@@ -64,7 +107,7 @@ public class Reflector {
      * @return Returns the amount of constructor declared in class.
      */
     public static int constructorAmount(@NotNull Class<?> clazz){
-        return clazz.getDeclaredConstructors().length;
+        return CONSTRUCTORS.get(clazz).size();
     }
 
     /**
@@ -73,7 +116,7 @@ public class Reflector {
      * @return Returns the amount of methods given {@code clazz} offers. The amount contains declared and inherited methods.
      */
     public static int methodAmount(@NotNull Class<?> clazz, @NotNull String name){
-        return getAllMethods(clazz).stream().map(Method::getName).filter(name::equals).toList().size();
+        return METHODS.get(clazz).named(name).size();
     }
 
     /**
@@ -81,6 +124,10 @@ public class Reflector {
      * @return Returns a list of all fields in given {@code clazz} which all have been made accessible, but not accessible through final.
      */
     public static List<Field> getAllFields(@NotNull Class<?> clazz){
+        return FIELDS.get(clazz).all();
+    }
+
+    private static List<Field> collectAllFields(@NotNull Class<?> clazz){
         // All collected fields -> set because no duplicates are allowed
         final LinkedHashSet<Field> set = new LinkedHashSet<>();
 
@@ -122,11 +169,11 @@ public class Reflector {
      * @return Returns field corresponding to given {@code name}, given {@code class} and at given {@code pos} in list. Inherited fields can be found too.
      */
     public static Field getField(@NotNull Class<?> clazz, @NotNull String name, int pos){
-        final Set<Field> fields = getAllFields(clazz).stream().filter(field -> field.getName().equals(name)).collect(Collectors.toSet());
+        final List<Field> fields = FIELDS.get(clazz).named(name);
 
         if (fields.isEmpty()) throw new IllegalArgumentException("Field: " + name + " is not valid field in " + clazz);
 
-        return fields.stream().toList().get(pos);
+        return fields.get(pos);
     }
 
     /**
@@ -134,7 +181,7 @@ public class Reflector {
      * @return Returns a list of all constructors in {@code clazz} which all have been made accessible from given.
      */
     public static List<? extends Constructor<?>> getAllConstructors(@NotNull Class<?> clazz){
-        return Arrays.stream(clazz.getDeclaredConstructors()).peek(constructor -> constructor.setAccessible(true)).toList();
+        return CONSTRUCTORS.get(clazz);
     }
 
     /**
@@ -143,11 +190,8 @@ public class Reflector {
      * @return Returns constructor corresponding to given {@code name} and given {@code class}.
      */
     public static Constructor<?> getConstructor(@NotNull Class<?> clazz, @NotNull Class<?>... parameterTypes){
-        for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
-            if (isCompatible(constructor.getParameterTypes(), parameterTypes)) {
-                constructor.setAccessible(true);
-                return constructor;
-            }
+        for (Constructor<?> constructor : CONSTRUCTORS.get(clazz)) {
+            if (isCompatible(constructor.getParameterTypes(), parameterTypes)) return constructor;
         }
         throw new IllegalArgumentException("Constructor with following parameters: " +
                 Arrays.toString(parameterTypes) + " does not exists in " + clazz);
@@ -163,9 +207,7 @@ public class Reflector {
     public static <T> Constructor<T> getConstructor(@NotNull Class<T> clazz, int index){
         if (index >= constructorAmount(clazz)) throw new IllegalArgumentException(clazz +
                 " does not have enough constructors for addressing with index number of " + index);
-        final Constructor<T> constructor = (Constructor<T>) clazz.getDeclaredConstructors()[index];
-        constructor.setAccessible(true);
-        return constructor;
+        return (Constructor<T>) CONSTRUCTORS.get(clazz).get(index);
     }
 
     /**
@@ -173,9 +215,7 @@ public class Reflector {
      * @return Returns a list of all methods in given {@code clazz} which all have been made accessible.
      */
     public static List<Method> getAllMethods(@NotNull Class<?> clazz){
-        final Set<Method> methods = new HashSet<>(List.of(clazz.getMethods()));
-        methods.addAll(List.of(clazz.getDeclaredMethods()));
-        return methods.stream().peek(method -> method.setAccessible(true)).toList();
+        return METHODS.get(clazz).all();
     }
 
     /**
@@ -185,14 +225,19 @@ public class Reflector {
      * @return Returns method corresponding to given {@code name} and given {@code clazz}. Inherited methods can be found too.
      */
     public static Method getMethod(@NotNull Class<?> clazz, @NotNull String name, @NotNull Class<?>... parameterTypes){
-        for (Method method : getAllMethods(clazz)) {
-            if (method.getName().equals(name) && isCompatible(method.getParameterTypes(), parameterTypes)) {
-                method.setAccessible(true);
+        final Method method = findMethod(clazz, name, parameterTypes);
+        if (method != null) return method;
+        throw new IllegalArgumentException("Method: " + name +
+                Arrays.toString(parameterTypes) + " does not exist in " + clazz);
+    }
+
+    private static @Nullable Method findMethod(@NotNull Class<?> clazz, @NotNull String name, @NotNull Class<?>[] parameterTypes){
+        for (Method method : METHODS.get(clazz).named(name)) {
+            if (method.getParameterCount() == parameterTypes.length && isCompatible(method.getParameterTypes(), parameterTypes)) {
                 return method;
             }
         }
-        throw new IllegalArgumentException("Method: " + name +
-                Arrays.toString(parameterTypes) + " does not exist in " + clazz);
+        return null;
     }
 
     /**
@@ -206,9 +251,7 @@ public class Reflector {
     public static Method getMethod(@NotNull Class<?> clazz, @NotNull String name, int index){
         if (!containsMethod(clazz, name)) throw new IllegalArgumentException("Method: " + name + " does not exist in " + clazz);
         if (index >= methodAmount(clazz, name)) throw new IllegalArgumentException("Method: " +  name + " is not accessible with index " + index);
-        final Method method = getAllMethods(clazz).get(index);
-        method.setAccessible(true);
-        return method;
+        return METHODS.get(clazz).named(name).get(index);
     }
 
     /**
@@ -429,34 +472,8 @@ public class Reflector {
                 parType = toWrapperClass(parType);
             }
 
-            // go to next parameter if current are equal
-            if (methType == parType) continue;
-
-            // Latitude search prepare
-            final ArrayDeque<Class<?>> queue = new ArrayDeque<>();
-            queue.add(parType);
-            boolean breakFlag = false;
-
-            // Latitude search from bottom to up in parQueueType class hierarchy to find matches with methType
-            while (!queue.isEmpty() && !breakFlag){
-                // remove current from queue
-                final Class<?> parQueueType = queue.remove();
-
-                // parQueueType matches -> go to next parameter
-                if (parQueueType  == methType) {
-                    breakFlag = true;
-                    continue;
-                }
-
-                // Add superclasses/interfaces to queue
-                if (hasSuperclass(parQueueType)) queue.add(parQueueType.getSuperclass());
-                if (hasInterfaces(parQueueType)) queue.addAll(Set.of(parQueueType.getInterfaces()));
-            }
-            // go to next parameter
-            if (breakFlag) continue;
-
             // current parameter does not match -> not compatible
-            return false;
+            if (!methType.isAssignableFrom(parType)) return false;
         }
         // all parameter matches -> compatible
         return true;
@@ -471,16 +488,15 @@ public class Reflector {
      * @throws IllegalArgumentException if the given class is not a primitive type
      */
     public static Class<?> toWrapperClass(Class<?> primitiveClass) {
-        return switch (primitiveClass.getName()) {
-            case "byte" -> Byte.class;
-            case "short" -> Short.class;
-            case "int" -> Integer.class;
-            case "long" -> Long.class;
-            case "float" -> Float.class;
-            case "double" -> Double.class;
-            case "boolean" -> Boolean.class;
-            case "char" -> Character.class;
-            default -> throw new IllegalArgumentException("Not a primitive type: " + primitiveClass.getName());
-        };
+        // Identity checks instead of a switch over the name, this is called for every parameter of every lookup
+        if (primitiveClass == int.class) return Integer.class;
+        if (primitiveClass == double.class) return Double.class;
+        if (primitiveClass == boolean.class) return Boolean.class;
+        if (primitiveClass == long.class) return Long.class;
+        if (primitiveClass == float.class) return Float.class;
+        if (primitiveClass == char.class) return Character.class;
+        if (primitiveClass == byte.class) return Byte.class;
+        if (primitiveClass == short.class) return Short.class;
+        throw new IllegalArgumentException("Not a primitive type: " + primitiveClass.getName());
     }
 }
@@ -0,0 +1,89 @@
+package org.hbrs.ooka.uebung2;
+
+import org.hbrs.ooka.uebung2.util.AsyncLogHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncLogHandlerTest {
+    private static final Formatter MESSAGE_FORMATTER = new Formatter() {
+        @Override
+        public String format(LogRecord record) {
+            return record.getMessage() + "\n";
+        }
+    };
+
+    @Test
+    public void concurrentPublishTest() throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AsyncLogHandler handler = new AsyncLogHandler(out, MESSAGE_FORMATTER, 64, AsyncLogHandler.OverflowPolicy.BLOCK);
+
+        // Der Puffer ist deutlich kleiner als die Anzahl der Einträge, BLOCK darf trotzdem nichts verlieren
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) handler.publish(new LogRecord(Level.INFO, thread + ":" + i));
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+        handler.flush();
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(4000, lines.length);
+        // Die Reihenfolge je Thread bleibt erhalten
+        int[] next = new int[4];
+        for (String line : lines) {
+            String[] parts = line.split(":");
+            int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+        handler.close();
+    }
+
+    @Test
+    public void dropPolicyTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        OutputStream blocking = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                sink.write(b, off, len);
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(blocking, MESSAGE_FORMATTER, 4, AsyncLogHandler.OverflowPolicy.DROP);
+
+        // Der Schreiber hängt im Stream fest, daher läuft der Puffer voll und weitere Einträge werden verworfen
+        for (int i = 0; i < 100; i++) handler.publish(new LogRecord(Level.INFO, "Eintrag " + i));
+        long dropped = handler.getDroppedCount();
+        assertTrue(dropped >= 100 - 2 * handler.getCapacity(), "Verworfen: " + dropped);
+
+        release.countDown();
+        handler.close();
+        String output = sink.toString();
+        assertEquals(100 - dropped, output.lines().filter(line -> line.startsWith("Eintrag")).count());
+        // Verworfene Einträge werden gemeldet, ggf. auf mehrere Meldungen verteilt
+        assertEquals(dropped, output.lines().filter(line -> line.contains("Log-Einträge wurden verworfen"))
+                .mapToLong(line -> Long.parseLong(line.substring(0, line.indexOf(' ')))).sum());
+    }
+}
@@ -0,0 +1,52 @@
+package org.hbrs.ooka.uebung2;
+
+import org.hbrs.ooka.uebung2.util.LoggerUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoggerUtilTest {
+
+    @Test
+    public void singleHandlerTest() {
+        // Mehrfaches Anfordern darf keine weiteren Handler registrieren
+        Logger logger = LoggerUtil.getLogger(LoggerUtilTest.class);
+        for (int i = 0; i < 10; i++) {
+            assertSame(logger, LoggerUtil.getLogger(LoggerUtilTest.class));
+        }
+        assertEquals(1, logger.getHandlers().length);
+    }
+
+    @Test
+    public void componentLevelTest() {
+        Logger parent = LoggerUtil.getLogger(LoggerUtilTest.class);
+        Logger child = LoggerUtil.getLogger(parent, "LevelKomponente");
+        assertEquals(0, child.getHandlers().length);
+        assertEquals(LoggerUtil.getDefaultLevel(), parent.getLevel());
+        assertEquals(Level.ALL, LoggerUtil.getDefaultLevel());
+        LoggerUtil.setLevel(parent.getName(), Level.INFO);
+
+        // Ohne eigenes Level gilt das Level des Elternloggers
+        assertFalse(child.isLoggable(Level.FINE));
+        LoggerUtil.setLevel(child.getName(), Level.FINE);
+        assertTrue(child.isLoggable(Level.FINE));
+        assertFalse(parent.isLoggable(Level.FINE));
+
+        LoggerUtil.setLevel(child.getName(), null);
+        assertFalse(child.isLoggable(Level.FINE));
+
+        // Unterhalb des Levels wird die Nachricht gar nicht erst gebaut
+        AtomicBoolean built = new AtomicBoolean();
+        child.fine(() -> {
+            built.set(true);
+            return "Wird nicht ausgegeben";
+        });
+        assertFalse(built.get());
+        LoggerUtil.setLevel(parent.getName(), null);
+        assertTrue(child.isLoggable(Level.FINE));
+    }
+}
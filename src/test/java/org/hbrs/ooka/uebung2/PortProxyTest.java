@@ -0,0 +1,376 @@
+package org.hbrs.ooka.uebung2;
+
+import org.hbrs.ooka.uebung2.annotations.Batchable;
+import org.hbrs.ooka.uebung2.annotations.Cacheable;
+import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.PortInstance;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.PortInterceptors;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironmentAPI;
+import org.hbrs.ooka.uebung2.util.ExpiringLruCache;
+import org.hbrs.ooka.uebung2.util.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PortProxyTest {
+
+    public interface Greeter {
+        String greet(String name, long times, double factor);
+    }
+
+    public static class GreeterPort implements Greeter {
+        @Override
+        public String greet(String name, long times, double factor) {
+            return "Hallo " + name + " " + times + " " + factor;
+        }
+    }
+
+    public static class Echo implements Supplier<String> {
+        private final String value;
+        private final boolean failing;
+
+        public Echo(String value, boolean failing) {
+            this.value = value;
+            this.failing = failing;
+        }
+
+        @Override
+        public String get() {
+            if (failing) throw new IllegalStateException(value);
+            return value;
+        }
+    }
+
+    public interface ProductLookup {
+        @Batchable(bulkMethod = "findAll", maxBatchSize = 8, maxDelayMicros = 10_000_000)
+        String find(int id);
+
+        @Batchable(bulkMethod = "findAll", maxDelayMicros = 50_000)
+        CompletableFuture<String> findAsync(int id);
+
+        @Batchable(bulkMethod = "findAll", maxBatchSize = 1)
+        String findOne(int id);
+
+        @Batchable(bulkMethod = "findSlowly", timeoutMillis = 50)
+        CompletableFuture<String> findSlowlyAsync(int id);
+
+        @Batchable(bulkMethod = "findSlowly", maxBatchSize = 1)
+        CompletableFuture<String> findSlowlyNow(int id);
+
+        List<String> findAll(List<Integer> ids);
+
+        List<String> findSlowly(List<Integer> ids);
+    }
+
+    public static class ProductLookupPort implements ProductLookup {
+        final AtomicInteger bulkCalls = new AtomicInteger();
+        final CountDownLatch slowRelease = new CountDownLatch(1);
+
+        @Override
+        public String find(int id) {
+            throw new UnsupportedOperationException("Wird nur gesammelt aufgerufen");
+        }
+
+        @Override
+        public CompletableFuture<String> findAsync(int id) {
+            throw new UnsupportedOperationException("Wird nur gesammelt aufgerufen");
+        }
+
+        @Override
+        public String findOne(int id) {
+            throw new UnsupportedOperationException("Wird nur gesammelt aufgerufen");
+        }
+
+        @Override
+        public CompletableFuture<String> findSlowlyAsync(int id) {
+            throw new UnsupportedOperationException("Wird nur gesammelt aufgerufen");
+        }
+
+        @Override
+        public CompletableFuture<String> findSlowlyNow(int id) {
+            throw new UnsupportedOperationException("Wird nur gesammelt aufgerufen");
+        }
+
+        @Override
+        public List<String> findSlowly(List<Integer> ids) {
+            try {
+                slowRelease.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return findAll(ids);
+        }
+
+        @Override
+        public List<String> findAll(List<Integer> ids) {
+            bulkCalls.incrementAndGet();
+            List<String> products = new ArrayList<>();
+            for (int id : ids) {
+                if (id < 0) throw new IllegalArgumentException("Ungültige ID " + id);
+                products.add("Produkt " + id);
+            }
+            return products;
+        }
+    }
+
+    public interface PriceCatalog {
+        @Cacheable(maxSize = 2)
+        int price(String product);
+
+        String currency();
+    }
+
+    public static class PriceCatalogPort implements PriceCatalog {
+        static final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public int price(String product) {
+            calls.incrementAndGet();
+            return product.length();
+        }
+
+        @Override
+        public String currency() {
+            calls.incrementAndGet();
+            return "EUR";
+        }
+    }
+
+    private static Component component() throws Exception {
+        return new Component(Paths.get("comps/ProduktManagement Komponente.jar").toFile());
+    }
+
+    @Test
+    public void perCallDispatchTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        Component component = component();
+        for (String value : new String[]{"a", "bb", "ccc"}) api.addPort(component, new StringBuilder(value));
+
+        // Der Proxy wird einmal geholt und verteilt trotzdem jeden Aufruf neu
+        CharSequence port = api.getPort(CharSequence.class);
+        assertFalse(Proxy.isProxyClass(port.getClass()));
+        assertSame(port, api.getPort(CharSequence.class));
+        Set<Integer> lengths = new HashSet<>();
+        for (int i = 0; i < 3; i++) lengths.add(port.length());
+        assertEquals(Set.of(1, 2, 3), lengths);
+        assertTrue(Set.of('a', 'b', 'c').contains(port.subSequence(0, 1).charAt(0)));
+        for (PortInstance instance : api.getPortInstances(StringBuilder.class)) assertEquals(0, instance.getInFlight());
+    }
+
+    @Test
+    public void interceptorTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        Component component = component();
+        api.addPort(component, new Echo("ok", false));
+        api.addPort(component, new Echo("kaputt", true));
+        LatencyHistogram latencies = new LatencyHistogram();
+        api.addInterceptor(PortInterceptors.timing(latencies));
+        api.addInterceptor(PortInterceptors.circuitBreaker(2, Duration.ofMinutes(1)));
+
+        @SuppressWarnings("unchecked")
+        Supplier<String> port = api.getPort(Supplier.class);
+        int failures = 0;
+        for (int i = 0; i < 4; i++) {
+            try {
+                assertEquals("ok", port.get());
+            } catch (IllegalStateException e) {
+                assertEquals("kaputt", e.getMessage());
+                failures++;
+            }
+        }
+        // Nach zwei Fehlern ist die fehlerhafte Instanz gesperrt
+        assertEquals(2, failures);
+        for (int i = 0; i < 10; i++) assertEquals("ok", port.get());
+        assertEquals(14, latencies.snapshot().getCount());
+    }
+
+    /**
+     * @return Returns a class loader defining {@link Greeter} and {@link GreeterPort} anew, like a component does.
+     */
+    private static ClassLoader greeterLoader() {
+        return new ClassLoader(PortProxyTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (!name.startsWith(PortProxyTest.class.getName() + "$Greeter")) return super.loadClass(name, resolve);
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> loaded = findLoadedClass(name);
+                    if (loaded != null) return loaded;
+                    try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        byte[] bytes = in.readAllBytes();
+                        return defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException e) {
+                        throw new ClassNotFoundException(name, e);
+                    }
+                }
+            }
+        };
+    }
+
+    @Test
+    public void componentInterfaceTest() throws Exception {
+        // Schnittstelle und Port stammen aus einem eigenen ClassLoader, wie bei einer Komponente
+        ClassLoader loader = greeterLoader();
+        Class<?> greeterClass = loader.loadClass(Greeter.class.getName());
+        assertNotSame(Greeter.class, greeterClass);
+
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        api.addPort(component(), loader.loadClass(GreeterPort.class.getName()).getDeclaredConstructor().newInstance());
+        Object port = api.getPort(greeterClass);
+        assertTrue(greeterClass.isInstance(port));
+        assertEquals("Hallo Welt 3 1.5", greeterClass.getMethod("greet", String.class, long.class, double.class)
+                .invoke(port, "Welt", 3L, 1.5));
+    }
+
+    @Test
+    public void sameNamedPortTest() throws Exception {
+        // Zwei Komponenten bringen gleichnamige Schnittstellen und Ports in eigenen ClassLoadern mit
+        ClassLoader loader1 = greeterLoader();
+        ClassLoader loader2 = greeterLoader();
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        api.addPort(component(), loader1.loadClass(GreeterPort.class.getName()).getDeclaredConstructor().newInstance());
+        api.addPort(component(), loader2.loadClass(GreeterPort.class.getName()).getDeclaredConstructor().newInstance());
+
+        // Jeder Proxy ruft nur die Instanz auf, die seine Schnittstelle implementiert
+        for (ClassLoader loader : List.of(loader1, loader2)) {
+            Class<?> greeterClass = loader.loadClass(Greeter.class.getName());
+            Object port = api.getPort(greeterClass);
+            Method greet = greeterClass.getMethod("greet", String.class, long.class, double.class);
+            for (int i = 0; i < 4; i++) assertEquals("Hallo Welt 1 1.0", greet.invoke(port, "Welt", 1L, 1.0));
+        }
+    }
+
+    @Test
+    public void ambiguousInterfaceTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        api.addPort(component(), new StringBuilder("a"));
+        api.addPort(component(), "b");
+
+        // Zwei Porttypen implementieren die Schnittstelle, keiner wird zufällig gewählt
+        CharSequence port = api.getPort(CharSequence.class);
+        IllegalStateException e = assertThrows(IllegalStateException.class, port::length);
+        assertTrue(e.getMessage().contains("java.lang.String und java.lang.StringBuilder"), e.getMessage());
+    }
+
+    @Test
+    public void batchingTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        ProductLookupPort instance = new ProductLookupPort();
+        api.addPort(component(), instance);
+        ProductLookup port = api.getPort(ProductLookup.class);
+
+        // 16 gleichzeitige Aufrufe ergeben zwei volle Sammelaufrufe
+        int callers = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            int id = i;
+            results.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return port.find(id);
+            }, runnable -> new Thread(runnable).start()));
+        }
+        start.countDown();
+        for (int i = 0; i < callers; i++) assertEquals("Produkt " + i, results.get(i).get());
+        assertEquals(2, instance.bulkCalls.get());
+
+        // Asynchrone Aufrufe werden nach Ablauf der Wartezeit zugestellt
+        CompletableFuture<String> first = port.findAsync(1);
+        CompletableFuture<String> second = port.findAsync(2);
+        assertEquals("Produkt 1", first.get());
+        assertEquals("Produkt 2", second.get());
+        assertEquals(3, instance.bulkCalls.get());
+
+        // Ein fehlgeschlagener Sammelaufruf schlägt für alle gesammelten Aufrufe fehl
+        ExecutionException e = assertThrows(ExecutionException.class, () -> port.findAsync(-1).get());
+        assertInstanceOf(IllegalArgumentException.class, e.getCause());
+
+        // Mit Stapelgröße 1 wird jeder Aufruf sofort einzeln zugestellt
+        int bulkCalls = instance.bulkCalls.get();
+        assertEquals("Produkt 7", port.findOne(7));
+        assertEquals("Produkt 8", port.findOne(8));
+        assertEquals(bulkCalls + 2, instance.bulkCalls.get());
+
+        // Ein hängender Sammelaufruf lässt die Aufrufer nicht ewig warten
+        ExecutionException timedOut = assertThrows(ExecutionException.class, () -> port.findSlowlyAsync(1).get());
+        assertInstanceOf(TimeoutException.class, timedOut.getCause());
+
+        // Auch wer einen Stapel füllt, wartet bei asynchronen Methoden nicht auf den Sammelaufruf
+        CompletableFuture<String> now = port.findSlowlyNow(2);
+        assertFalse(now.isDone());
+        instance.slowRelease.countDown();
+        assertEquals("Produkt 2", now.get());
+    }
+
+    @Test
+    public void cachingTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        Component component = component();
+        // Zwei Instanzen wie bei Replikaten, die sich den Cache teilen
+        api.addPort(component, new PriceCatalogPort());
+        api.addPort(component, new PriceCatalogPort());
+        PriceCatalog port = api.getPort(PriceCatalog.class);
+        PriceCatalogPort.calls.set(0);
+
+        for (int i = 0; i < 10; i++) assertEquals(4, port.price("Buch"));
+        assertEquals(1, PriceCatalogPort.calls.get());
+        // Nicht annotierte Methoden werden immer aufgerufen
+        port.currency();
+        port.currency();
+        assertEquals(3, PriceCatalogPort.calls.get());
+
+        // Höchstens zwei Ergebnisse, das am längsten unbenutzte wird verdrängt
+        assertEquals(5, port.price("Stift"));
+        assertEquals(4, port.price("Buch"));
+        assertEquals(3, port.price("Hut"));
+        assertEquals(4, port.price("Buch"));
+        assertEquals(5, PriceCatalogPort.calls.get());
+        ExpiringLruCache.Stats stats = api.getCacheStats().get(PriceCatalogPort.class.getName() + ".price(String)");
+        assertEquals(11, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(2, stats.getSize());
+
+        // Gezieltes und vollständiges Invalidieren
+        api.invalidateCache(PriceCatalogPort.class.getName(), "price", List.of("Buch"));
+        port.price("Buch");
+        port.price("Hut");
+        assertEquals(6, PriceCatalogPort.calls.get());
+        api.invalidateCache(PriceCatalogPort.class.getName());
+        port.price("Buch");
+        assertEquals(7, PriceCatalogPort.calls.get());
+
+        // Werden die Ports der Komponente entfernt, z.B. beim Redeployment, ist der Cache leer
+        api.removePorts(component);
+        api.addPort(component, new PriceCatalogPort());
+        port.price("Buch");
+        assertEquals(8, PriceCatalogPort.calls.get());
+    }
+
+    @Test
+    public void missingImplementationTest() {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        Greeter greeter = api.getPort(Greeter.class);
+        assertThrows(IllegalStateException.class, () -> greeter.greet("Welt", 1, 1));
+    }
+}
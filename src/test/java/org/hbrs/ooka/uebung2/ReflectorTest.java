@@ -0,0 +1,55 @@
+package org.hbrs.ooka.uebung2;
+
+import org.hbrs.ooka.uebung2.util.Reflector;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReflectorTest {
+
+    public static class Base {
+        protected int id;
+
+        public void update(Object value) {
+        }
+    }
+
+    public static class Child extends Base {
+        private String name;
+
+        public Child(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public void update(String name, double price) {
+        }
+    }
+
+    @Test
+    public void cachedLookupTest() {
+        // Wiederholte Aufrufe liefern dieselben, bereits zugreifbar gemachten Objekte
+        assertSame(Reflector.getField(Child.class, "id"), Reflector.getField(Child.class, "id"));
+        assertSame(Reflector.getAllMethods(Child.class), Reflector.getAllMethods(Child.class));
+        assertEquals(Base.class, Reflector.getField(Child.class, "id").getDeclaringClass());
+        assertTrue(Reflector.containsField(Child.class, "name"));
+        assertFalse(Reflector.containsField(Child.class, "price"));
+    }
+
+    @Test
+    public void overloadedMethodTest() {
+        // Der Index bezieht sich nur auf die Methoden mit dem gesuchten Namen
+        assertEquals(2, Reflector.methodAmount(Child.class, "update"));
+        for (int i = 0; i < 2; i++) {
+            assertEquals("update", Reflector.getMethod(Child.class, "update", i).getName());
+        }
+
+        Method method = Reflector.getMethod(Child.class, "update", String.class, double.class);
+        assertEquals(2, method.getParameterCount());
+        assertTrue(Reflector.containsMethod(Child.class, "update", Integer.class));
+        assertTrue(Reflector.containsConstructor(Child.class, Integer.class, String.class));
+        assertFalse(Reflector.containsConstructor(Child.class, String.class));
+    }
+}
@@ -0,0 +1,217 @@
+package org.hbrs.ooka.uebung2;
+
+import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.AsyncLimits;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.BulkheadLimits;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.DispatchStrategies;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.PortInstance;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.PortInterceptor;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.PortRejectedException;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironmentAPI;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuntimeEnvironmentAPITest {
+
+    @Test
+    public void concurrentRoundRobinTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        Component component = new Component(Paths.get("comps/ProduktManagement Komponente.jar").toFile());
+        StringBuilder[] ports = {new StringBuilder("a"), new StringBuilder("b"), new StringBuilder("c")};
+        for (StringBuilder port : ports) api.addPort(component, port);
+
+        int threads = 8;
+        int callsPerThread = 30_000;
+        ConcurrentHashMap<Object, AtomicInteger> hits = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < callsPerThread; i++) {
+                    hits.computeIfAbsent(api.getPort(StringBuilder.class), k -> new AtomicInteger()).incrementAndGet();
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        // Kein Aufruf darf verloren gehen und jede Instanz bekommt genau ein Drittel
+        assertEquals(3, hits.size());
+        for (StringBuilder port : ports) {
+            assertEquals(threads * callsPerThread / 3, hits.get(port).get());
+        }
+    }
+
+    @Test
+    public void leastInFlightTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        api.setDispatchStrategy(StringBuilder.class, DispatchStrategies.leastInFlight());
+        Component component = new Component(Paths.get("comps/ProduktManagement Komponente.jar").toFile());
+        StringBuilder slow = new StringBuilder("slow");
+        StringBuilder fast = new StringBuilder("fast");
+        api.addPort(component, slow);
+        api.addPort(component, fast);
+
+        // Solange ein Aufruf auf einer Instanz hängt, müssen alle weiteren auf die andere gehen
+        Object busy = api.invoke(StringBuilder.class, port -> {
+            for (int i = 0; i < 10; i++) {
+                assertNotSame(port, api.invoke(StringBuilder.class, other -> other));
+            }
+            return port;
+        });
+        for (PortInstance instance : api.getPortInstances(StringBuilder.class)) {
+            assertEquals(0, instance.getInFlight());
+        }
+        assertNotNull(busy);
+    }
+
+    @Test
+    public void weightedRoundRobinTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        api.setDispatchStrategy(StringBuilder.class, DispatchStrategies.weightedRoundRobin());
+        Component component = new Component(Paths.get("comps/ProduktManagement Komponente.jar").toFile());
+        StringBuilder heavy = new StringBuilder("heavy");
+        api.addPort(component, heavy);
+        api.addPort(component, new StringBuilder("light"));
+        api.getPortInstances(StringBuilder.class).get(0).setWeight(3);
+
+        int heavyHits = 0;
+        for (int i = 0; i < 400; i++) {
+            if (api.getPort(StringBuilder.class) == heavy) heavyHits++;
+        }
+        assertEquals(300, heavyHits);
+    }
+
+    @Test
+    public void invokeAsyncTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        api.addPort(new Component(Paths.get("comps/ProduktManagement Komponente.jar").toFile()), new StringBuilder("a"));
+        api.setAsyncLimits(StringBuilder.class, new AsyncLimits(2, 2, null));
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(2);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(api.invokeAsync(StringBuilder.class, port -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                running.countDown();
+                release.await();
+                concurrent.decrementAndGet();
+                return port.toString();
+            }));
+        }
+        running.await();
+
+        // Zwei Aufrufe laufen, zwei warten, der fünfte passt nicht mehr in die Warteschlange
+        assertEquals(Map.of(StringBuilder.class.getName(), 2), api.getAsyncQueueDepths());
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+                () -> api.invokeAsync(StringBuilder.class, StringBuilder::toString).get());
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+        assertEquals(1, api.getAsyncRejections().get(StringBuilder.class.getName()));
+
+        release.countDown();
+        for (CompletableFuture<String> result : results) assertEquals("a", result.get());
+        assertEquals(2, maxConcurrent.get());
+        assertEquals(0, api.getAsyncQueueDepths().get(StringBuilder.class.getName()));
+
+        // Ein zu langsamer Aufruf schlägt fehl und wird unterbrochen
+        api.setAsyncLimits(StringBuilder.class, new AsyncLimits(2, 2, Duration.ofMillis(50)));
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ExecutionException timedOut = assertThrows(ExecutionException.class, () ->
+                api.invokeAsync(StringBuilder.class, port -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                    }
+                    return port.toString();
+                }).get());
+        assertInstanceOf(TimeoutException.class, timedOut.getCause());
+        interrupted.await();
+        assertEquals(1, api.getAsyncTimeouts().get(StringBuilder.class.getName()));
+
+        // Ohne Port schlägt nur das Future fehl
+        ExecutionException missing = assertThrows(ExecutionException.class,
+                () -> api.invokeAsync(String.class, String::length).get());
+        assertInstanceOf(IllegalStateException.class, missing.getCause());
+    }
+
+    @Test
+    public void bulkheadTest() throws Exception {
+        RuntimeEnvironmentAPI api = new RuntimeEnvironmentAPI();
+        api.addPort(new Component(Paths.get("comps/ProduktManagement Komponente.jar").toFile()), new StringBuilder("a"));
+        api.setBulkhead(StringBuilder.class, new BulkheadLimits(2, 1, 10));
+        String typeName = StringBuilder.class.getName();
+
+        // Zwei hängende Aufrufe füllen das Schott, der dritte wird sofort abgewiesen
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(2);
+        List<CompletableFuture<String>> blocked = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            blocked.add(api.invokeAsync(StringBuilder.class, port -> {
+                running.countDown();
+                release.await();
+                return port.toString();
+            }));
+        }
+        running.await();
+        assertThrows(PortRejectedException.class, () -> api.invoke(StringBuilder.class, StringBuilder::toString));
+        // Abgewiesene Aufrufe erreichen die Interceptoren gar nicht erst
+        AtomicInteger befores = new AtomicInteger();
+        AtomicInteger afters = new AtomicInteger();
+        api.addInterceptor(new PortInterceptor() {
+            @Override
+            public boolean before(PortInstance instance, Method method) {
+                befores.incrementAndGet();
+                return true;
+            }
+
+            @Override
+            public void after(PortInstance instance, Method method, long nanos, Throwable failure) {
+                afters.incrementAndGet();
+            }
+        });
+        CharSequence proxy = api.getPort(CharSequence.class);
+        assertThrows(PortRejectedException.class, proxy::length);
+        assertEquals(0, befores.get());
+        assertEquals(2, api.getBulkheadRejections().get(typeName));
+        release.countDown();
+        for (CompletableFuture<String> result : blocked) assertEquals("a", result.get());
+
+        // Ohne Last wächst die Grenze nur, solange sie zur Hälfte ausgeschöpft wird
+        for (int i = 0; i < 100; i++) assertEquals(1, proxy.length());
+        assertEquals(100, befores.get());
+        assertEquals(100, afters.get());
+        assertEquals(3, api.getConcurrencyLimits().get(typeName));
+
+        // Fehler senken die Grenze multiplikativ bis zum Minimum
+        for (int i = 0; i < 10; i++) {
+            assertThrows(IndexOutOfBoundsException.class, () -> api.invoke(StringBuilder.class, port -> port.charAt(5)));
+        }
+        assertEquals(1, api.getConcurrencyLimits().get(typeName));
+
+        api.setBulkhead(StringBuilder.class, null);
+        assertTrue(api.getConcurrencyLimits().isEmpty());
+    }
+
+    @Test
+    public void missingPortTest() {
+        assertThrows(IllegalStateException.class, () -> new RuntimeEnvironmentAPI().getPort(String.class));
+    }
+}
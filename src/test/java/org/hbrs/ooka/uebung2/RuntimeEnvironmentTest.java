@@ -1,18 +1,73 @@
 package org.hbrs.ooka.uebung2;
 
+import org.hbrs.ooka.uebung2.annotations.Start;
+import org.hbrs.ooka.uebung2.annotations.Stop;
 import org.hbrs.ooka.uebung2.component.Component;
+import org.hbrs.ooka.uebung2.component.ComponentMetadata;
+import org.hbrs.ooka.uebung2.component.ComponentMetadataIndex;
+import org.hbrs.ooka.uebung2.component.ComponentState;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.ComponentRegistry;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.IRuntimeEnvironmentAPI;
+import org.hbrs.ooka.uebung2.runtimeEnvironment.PortInstance;
 import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
+import org.hbrs.ooka.uebung2.util.LoggerUtil;
+import com.sun.management.UnixOperatingSystemMXBean;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.lang.reflect.Constructor;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class RuntimeEnvironmentTest {
 
+    public static class LifecycleBase {
+        @Start
+        public static void start() {
+        }
+
+        @Stop
+        public static void stop() {
+        }
+    }
+
+    public static class LifecycleMiddle extends LifecycleBase {
+    }
+
+    public static class InheritedLifecycle extends LifecycleMiddle {
+        public static IRuntimeEnvironmentAPI api;
+    }
+
     @Test
     public void separateClassLoaderTest() throws Exception {
         Path path = Paths.get("comps/ProduktManagement Komponente.jar");
@@ -40,9 +95,407 @@ public class RuntimeEnvironmentTest {
     }
 
     @Test
-    public void roundTripTest() throws Exception {
+    public void deployMetadataTest(@TempDir Path dir) throws Exception {
+        RuntimeEnvironment re = new RuntimeEnvironment(copyComponents(dir).toString());
+        Component component = new Component(dir.resolve("ProduktManagement Komponente.jar").toFile());
+        component.deploy(re);
+
+        ComponentMetadata metadata = component.getMetadata();
+        assertNotNull(metadata);
+        assertEquals(List.of("org.hbrs.ooka.uebung1.component.PortProductManagement"), metadata.portClassNames());
+        assertEquals("org.hbrs.ooka.uebung1.ProductManagementMain", metadata.lifecycleClassName());
+        assertEquals("start", metadata.startMethodName());
+        assertEquals("stop", metadata.stopMethodName());
+        assertNotNull(component.getDeployTimings());
+        assertNotNull(re.getApi().getPort(component.getClassLoader().loadClass(metadata.portClassNames().get(0))));
+    }
+
+    @Test
+    public void metadataIndexTest(@TempDir Path dir) throws Exception {
+        File jar = Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar")).toFile();
+        Path indexFile = dir.resolve(RuntimeEnvironment.METADATA_INDEX_FILE);
+
+        ComponentMetadataIndex index = new ComponentMetadataIndex(indexFile);
+        assertNull(index.lookup(jar));
+        ComponentMetadata scanned = index.getOrScan(jar, "Produkt");
+        // Erst flush() schreibt die Datei
+        assertFalse(Files.exists(indexFile));
+        index.flush();
+
+        // Ein neuer Index liest die Metadaten aus der Datei, auch wenn nur der Zeitstempel verändert wurde
+        assertTrue(jar.setLastModified(jar.lastModified() - 10_000));
+        assertEquals(scanned, new ComponentMetadataIndex(indexFile).lookup(jar));
+
+        // Geänderter Inhalt macht den Eintrag ungültig
+        Files.write(jar.toPath(), new byte[]{0}, StandardOpenOption.APPEND);
+        assertNull(new ComponentMetadataIndex(indexFile).lookup(jar));
+
+        // Einträge gelöschter Jars werden beim Schreiben entfernt
+        Files.delete(jar.toPath());
+        index.flush();
+        assertEquals(0, new ComponentMetadataIndex(indexFile).size());
+    }
+
+    @Test
+    public void inheritedLifecycleTest(@TempDir Path dir) throws Exception {
+        ComponentMetadataIndex index = new ComponentMetadataIndex(dir.resolve(RuntimeEnvironment.METADATA_INDEX_FILE));
+
+        // Die Oberklassen liegen im Jar und werden aus den Klassendateien gelesen
+        File jar = writeJar(dir.resolve("Vererbt.jar"), InheritedLifecycle.class, LifecycleMiddle.class, LifecycleBase.class);
+        ComponentMetadata metadata = index.getOrScan(jar, "Vererbt");
+        assertEquals(InheritedLifecycle.class.getName(), metadata.lifecycleClassName());
+        assertEquals("start", metadata.startMethodName());
+        assertEquals("stop", metadata.stopMethodName());
+        assertEquals(List.of("api"), metadata.apiFieldNames());
+
+        // Die Oberklasse fehlt im Jar und wird per Reflection untersucht
+        jar = writeJar(dir.resolve("Unterklasse.jar"), InheritedLifecycle.class);
+        assertEquals(metadata, index.getOrScan(jar, "Unterklasse"));
+
+        // Eine Klasse ohne eigene Lebenszyklus-Member ist kein Kandidat, ihre Oberklasse außerhalb des Jars wird nicht untersucht
+        jar = writeJar(dir.resolve("Mitte.jar"), LifecycleMiddle.class);
+        assertNull(index.getOrScan(jar, "Mitte").lifecycleClassName());
+    }
+
+    private static File writeJar(Path path, Class<?>... classes) throws Exception {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(path))) {
+            for (Class<?> clazz : classes) {
+                String entryName = clazz.getName().replace('.', '/') + ".class";
+                out.putNextEntry(new ZipEntry(entryName));
+                try (InputStream in = clazz.getClassLoader().getResourceAsStream(entryName)) {
+                    in.transferTo(out);
+                }
+            }
+        }
+        return path.toFile();
+    }
+
+    @Test
+    public void bulkLoadTest(@TempDir Path dir) throws Exception {
+        Path jar = Paths.get("comps/ProduktManagement Komponente.jar");
+        for (int i = 0; i < 20; i++) Files.copy(jar, dir.resolve("Produkt" + i + ".jar"));
+
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.setParallelism(4);
+        re.start();
+        assertEquals(20, re.deployAll());
+        assertEquals(20, re.getApi().getPortInstances(
+                Class.forName("org.hbrs.ooka.uebung1.component.PortProductManagement", false,
+                        new Component(jar.toFile()).getClassLoader())).size());
+
+        // refresh() lädt nur die neue Datei nach
+        Files.copy(jar, dir.resolve("Produkt20.jar"));
+        re.refresh();
+        assertEquals(1, re.deployAll());
+    }
+
+    @Test
+    public void lazyActivationTest(@TempDir Path dir) throws Exception {
+        Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar"));
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.setLazyActivation(true);
+        re.start();
+        assertEquals(1, re.deployAll());
+
+        // Nach dem Deployment ist nur der Deskriptor registriert
+        Component component = re.getRegistry().get(0);
+        Class<?> portClass = component.getClassLoader().loadClass("org.hbrs.ooka.uebung1.component.PortProductManagement");
+        PortInstance instance = re.getApi().getPortInstances(portClass).get(0);
+        assertFalse(instance.isActivated());
+        assertEquals(ComponentState.DEPLOYED, component.getState());
+
+        // Die erste Anfrage erzeugt den Port und startet die Komponente
+        Object port = re.getApi().getPort(portClass);
+        assertTrue(portClass.isInstance(port));
+        assertTrue(instance.isActivated());
+        assertSame(port, re.getApi().getPort(portClass));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (component.getState() != ComponentState.STARTED && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(ComponentState.STARTED, component.getState());
+    }
+
+    @Test
+    public void idlePassivationTest(@TempDir Path dir) throws Exception {
+        Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar"));
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.start();
+        re.deployAll();
+        re.startComponentAsync(0).join();
+        Component component = re.getRegistry().get(0);
+        String portClassName = "org.hbrs.ooka.uebung1.component.PortProductManagement";
+        Class<?> portClass = component.getClassLoader().loadClass(portClassName);
+
+        // Ohne Anfragen wird die Komponente nach Ablauf des Timeouts passiviert
+        re.setIdleTimeout(Duration.ofMillis(50));
+        long deadline = System.currentTimeMillis() + 5000;
+        // Die Kopie wird vor dem Stoppen der alten Komponente eingetragen
+        while (component.getState() != ComponentState.STOPPED && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        Component passivated = re.getRegistry().get(0);
+        assertNotSame(component, passivated);
+        assertEquals(ComponentState.STOPPED, component.getState());
+        assertEquals(ComponentState.DEPLOYED, passivated.getState());
+        assertTrue(re.getApi().getPortInstances(portClass).stream().noneMatch(instance -> instance.getComponent() == component));
+
+        // Die nächste Anfrage aktiviert die Komponente wieder
+        re.setIdleTimeout(null);
+        Object port = re.getApi().getPort(portClass);
+        assertEquals(passivated.getClassLoader(), port.getClass().getClassLoader());
+        while (passivated.getState() != ComponentState.STARTED && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(ComponentState.STARTED, passivated.getState());
+    }
+
+    @Test
+    public void unloadLeakTest(@TempDir Path dir) throws Exception {
+        File jar = Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar")).toFile();
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        LoggerUtil.setLevel(RuntimeEnvironment.getComponentLogger("Produkt").getName(), Level.WARNING);
+        Class<?> portClass = new Component(jar).getClassLoader()
+                .loadClass("org.hbrs.ooka.uebung1.component.PortProductManagement");
+
+        redeploy(re, jar, 50);
+        long before = openDescriptors();
+        // Ohne Entladen würde jede Iteration einen Classloader samt Klassen und einen Dateideskriptor behalten
+        WeakReference<ClassLoader> loader = redeploy(re, jar, 300);
+        long after = openDescriptors();
+
+        assertTrue(re.getApi().getPortInstances(portClass).isEmpty());
+        assertTrue(re.getRegistry().isEmpty());
+        assertTrue(isCollected(loader), "Der Classloader einer gelöschten Komponente wurde nicht freigegeben");
+        assertTrue(after - before < 20, "Dateideskriptoren: " + before + " -> " + after);
+    }
+
+    /**
+     * @return Returns a weak reference to the class loader of the first deployed component.
+     */
+    private static WeakReference<ClassLoader> redeploy(RuntimeEnvironment re, File jar, int times) throws Exception {
+        WeakReference<ClassLoader> first = null;
+        for (int i = 0; i < times; i++) {
+            Component component = new Component(jar);
+            if (first == null) first = new WeakReference<>(component.getClassLoader());
+            int id = re.getRegistry().register(component);
+            assertTrue(re.deployComponentById(id));
+            assertTrue(re.deleteComponentById(id));
+        }
+        return first;
+    }
+
+    private static boolean isCollected(WeakReference<?> reference) throws InterruptedException {
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        return reference.get() == null;
+    }
+
+    /**
+     * @return Returns the amount of open file descriptors after a full garbage collection or -1 if unknown.
+     */
+    private static long openDescriptors() {
+        System.gc();
+        return ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean unix ?
+                unix.getOpenFileDescriptorCount() : -1;
+    }
+
+    /**
+     * Copies the component jars of {@code comps}, so the metadata index written when deploying does not end up in the
+     * source tree.
+     * @return Returns given directory.
+     */
+    private static Path copyComponents(Path dir) throws Exception {
+        try (Stream<Path> jars = Files.list(Paths.get("comps"))) {
+            for (Path jar : jars.filter(path -> path.toString().endsWith(".jar")).toList()) {
+                Files.copy(jar, dir.resolve(jar.getFileName()));
+            }
+        }
+        return dir;
+    }
+
+    @Test
+    public void hotRedeployTest(@TempDir Path dir) throws Exception {
+        Path jar = Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar"));
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.start();
+        re.deployAll();
+        re.startComponentAsync(0).join();
+        Component original = re.getRegistry().get(0);
+        Class<?> portClass = original.getClassLoader().loadClass("org.hbrs.ooka.uebung1.component.PortProductManagement");
+
+        // Während des Austauschs muss jede Anfrage beantwortet werden
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger errors = new AtomicInteger();
+        Thread client = new Thread(() -> {
+            while (!done.get()) {
+                try {
+                    re.getApi().getPort(portClass);
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        client.start();
+        assertTrue(re.redeployComponentById(0));
+        done.set(true);
+        client.join();
+
+        Component redeployed = re.getRegistry().get(0);
+        assertNotSame(original, redeployed);
+        assertEquals(0, errors.get());
+        assertEquals(ComponentState.STOPPED, original.getState());
+        assertEquals(List.of(redeployed), re.getApi().getPortInstances(portClass).stream()
+                .map(PortInstance::getComponent).toList());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (redeployed.getState() != ComponentState.STARTED && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(ComponentState.STARTED, redeployed.getState());
+
+        // Eine geänderte Datei wird automatisch neu deployt
+        re.setHotRedeploy(true);
+        Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), jar, StandardCopyOption.REPLACE_EXISTING);
+        while (re.getRegistry().get(0) == redeployed && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertNotSame(redeployed, re.getRegistry().get(0));
+        re.setHotRedeploy(false);
+    }
+
+    @Test
+    public void autoDiscoveryTest(@TempDir Path dir) throws Exception {
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.start();
+        re.setAutoDiscovery(true);
+
+        // Die Datei wird in Teilen geschrieben und erst nach Abschluss genau einmal geladen
+        byte[] bytes = Files.readAllBytes(Paths.get("comps/ProduktManagement Komponente.jar"));
+        Path jar = dir.resolve("Produkt.jar");
+        int chunk = bytes.length / 3 + 1;
+        for (int offset = 0; offset < bytes.length; offset += chunk) {
+            Files.write(jar, Arrays.copyOfRange(bytes, offset, Math.min(bytes.length, offset + chunk)),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            Thread.sleep(100);
+        }
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!re.getRegistry().containsName("Produkt") && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertEquals(1, re.getRegistry().getIdsByName("Produkt").size());
+        assertEquals(1, re.deployAll());
+
+        // Eine ersetzte Datei wird ohne Hot Redeploy als neue Komponente geladen
+        int oldId = re.getRegistry().getIdsByName("Produkt").first();
+        Files.write(jar, bytes);
+        while ((re.getRegistry().getIdsByName("Produkt").isEmpty() || re.getRegistry().getIdsByName("Produkt").contains(oldId))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, re.getRegistry().getIdsByName("Produkt").size());
+        assertEquals(1, re.deployAll());
+
+        // Eine entfernte Datei löscht die Komponente
+        Files.delete(jar);
+        while (re.getRegistry().containsName("Produkt") && System.currentTimeMillis() < deadline) Thread.sleep(10);
+        assertTrue(re.getRegistry().isEmpty());
+        re.setAutoDiscovery(false);
+    }
+
+    @Test
+    public void sharedLibraryTest(@TempDir Path dir) throws Exception {
+        Path jar = Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar"));
+        // Die Bibliothek enthält die Hilfsklassen, die sonst jede Komponente selbst mitbringt
+        Files.createDirectory(dir.resolve(RuntimeEnvironment.LIB_DIR));
+        try (ZipInputStream in = new ZipInputStream(Files.newInputStream(jar));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(dir.resolve("lib/common.jar")))) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null; ) {
+                if (!entry.getName().startsWith("org/hbrs/ooka/uebung1/util/")) continue;
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                in.transferTo(out);
+            }
+        }
+
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.start();
+        assertTrue(re.deployComponentById(0));
+        assertTrue(re.deployComponentById(0));
+        ClassLoader loader0 = re.getRegistry().get(0).getClassLoader();
+        ClassLoader loader1 = re.getRegistry().get(1).getClassLoader();
+
+        String sharedClass = "org.hbrs.ooka.uebung1.util.LoggerUtil";
+        assertSame(re.getLibraryClassLoader(), loader0.loadClass(sharedClass).getClassLoader());
+        assertSame(loader0.loadClass(sharedClass), loader1.loadClass(sharedClass));
+        // Die eigenen Klassen bleiben je Komponente getrennt
+        String ownClass = "org.hbrs.ooka.uebung1.component.Product";
+        assertNotSame(loader0.loadClass(ownClass), loader1.loadClass(ownClass));
+
+        re.shutdown();
+        assertNull(re.getRegistry().get(0));
+    }
+
+    @Test
+    public void scaleComponentTest(@TempDir Path dir) throws Exception {
+        Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar"));
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.start();
+        re.deployAll();
+        re.startComponentAsync(0).join();
+        Component component = re.getRegistry().get(0);
+        Class<?> portClass = component.getClassLoader().loadClass("org.hbrs.ooka.uebung1.component.PortProductManagement");
+        assertFalse(component.getMetadata().isStateless());
+
+        // Die Replikate übernehmen die Metadaten und werden wie die Komponente gestartet
+        assertEquals(5, re.scaleComponent(0, 5));
+        assertEquals(5, re.getRegistry().size());
+        assertEquals(5, re.getApi().getPortInstances(portClass).size());
+        for (Component replica : re.getRegistry().snapshot().values()) {
+            assertSame(component.getMetadata(), replica.getMetadata());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (replica.getState() != ComponentState.STARTED && System.currentTimeMillis() < deadline) Thread.sleep(10);
+            assertEquals(ComponentState.STARTED, replica.getState());
+        }
+
+        // Beim Herunterskalieren werden die neuesten Replikate zuerst entfernt
+        assertEquals(2, re.scaleComponent(0, 2));
+        assertEquals(2, re.getApi().getPortInstances(portClass).size());
+        assertEquals(List.of(0, 1), new ArrayList<>(re.getRegistry().snapshot().keySet()));
+        assertThrows(IllegalArgumentException.class, () -> re.scaleComponent(0, 0));
+
+        // Das Löschen der Komponente entfernt auch ihre Replikate
+        assertTrue(re.deleteComponentById(0));
+        assertEquals(0, re.getRegistry().size());
+        assertTrue(re.getApi().getPortInstances(portClass).isEmpty());
+    }
+
+    @Test
+    public void startFutureTest(@TempDir Path dir) throws Exception {
+        Files.copy(Paths.get("comps/ProduktManagement Client Simulation Komponente.jar"), dir.resolve("Client.jar"));
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.start();
+        re.deployAll();
+
+        // Ohne ProduktManagement im Classpath schlägt der Start fehl und das Future meldet den Fehler
+        assertThrows(CompletionException.class, () -> re.startComponentAsync(0).join());
+        assertTrue(re.startComponentAsync(42).isCompletedExceptionally());
+        assertTrue(re.getExecutor().getActiveThreads().isEmpty());
+    }
+
+    @Test
+    public void stableIdTest() throws Exception {
+        ComponentRegistry registry = new ComponentRegistry();
+        File jar = Paths.get("comps/ProduktManagement Komponente.jar").toFile();
+        List<Component> components = new ArrayList<>();
+        for (int i = 0; i < 200; i++) components.add(new Component(jar));
+
+        // Gleichzeitige Registrierung vergibt jede ID genau einmal
+        List<Integer> ids = components.parallelStream().map(registry::register).toList();
+        assertEquals(200, new HashSet<>(ids).size());
+        assertEquals(200, registry.getIdsByName("ProduktManagement Komponente").size());
+
+        // Löschen verschiebt keine anderen IDs
+        Component last = registry.get(199);
+        assertNotNull(registry.remove(0));
+        assertNull(registry.get(0));
+        assertEquals(last, registry.get(199));
+        assertEquals(199, registry.snapshot().size());
+        assertEquals(1, registry.snapshot().firstKey());
+    }
+
+    @Test
+    public void roundTripTest(@TempDir Path dir) throws Exception {
         // Bei ClassNotFound Errors die ProduktManagement Komponente in den classpath kopieren
-        RuntimeEnvironment re = new RuntimeEnvironment("comps");
+        RuntimeEnvironment re = new RuntimeEnvironment(copyComponents(dir).toString());
         re.start();
 
         re.listComponents();
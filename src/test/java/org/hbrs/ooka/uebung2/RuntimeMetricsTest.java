@@ -0,0 +1,70 @@
+package org.hbrs.ooka.uebung2;
+
+import org.hbrs.ooka.uebung2.runtimeEnvironment.RuntimeEnvironment;
+import org.hbrs.ooka.uebung2.util.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanServer;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuntimeMetricsTest {
+
+    @Test
+    public void histogramTest() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().percentileNanos(99));
+
+        for (long i = 1; i <= 100_000; i++) histogram.record(i * 1000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100.0, snapshot.getMaxMillis(), 1e-9);
+        assertEquals(50.0005, snapshot.getMeanMillis(), 1e-6);
+        // Die Buckets teilen jede Zweierpotenz in 16 Teile, der Fehler liegt also unter 1/16
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            double expected = percentile * 1000 * 1000;
+            assertEquals(expected, snapshot.percentileNanos(percentile), expected / 16, "p" + percentile);
+        }
+        assertEquals(100_000_000, snapshot.percentileNanos(100));
+    }
+
+    @Test
+    public void jmxTest(@TempDir Path dir) throws Exception {
+        Files.copy(Paths.get("comps/ProduktManagement Komponente.jar"), dir.resolve("Produkt.jar"));
+        RuntimeEnvironment re = new RuntimeEnvironment(dir.toString());
+        re.start();
+        re.deployAll();
+        re.startComponentAsync(0).join();
+        String portClassName = "org.hbrs.ooka.uebung1.component.PortProductManagement";
+        Class<?> portClass = re.getRegistry().get(0).getClassLoader().loadClass(portClassName);
+        for (int i = 0; i < 10; i++) re.getApi().getPort(portClass);
+
+        // Abfrage direkt an der Laufzeitumgebung
+        assertEquals(1, re.getMetrics().getDeployLatency().getCount());
+        assertEquals(1, re.getMetrics().getStartLatency().getCount());
+        assertEquals(10, re.getMetrics().getPortRequests().get(portClassName));
+        assertEquals(List.of(0), re.getMetrics().getPortInFlight().get(portClassName));
+        assertEquals(1, re.getMetrics().getClassLoaderCount());
+
+        // Dieselben Werte als offene Typen über JMX
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        CompositeData start = (CompositeData) server.getAttribute(re.getMetricsObjectName(), "StartLatency");
+        assertEquals(1L, start.get("count"));
+        TabularData requests = (TabularData) server.getAttribute(re.getMetricsObjectName(), "PortRequests");
+        assertEquals(10L, requests.get(new Object[]{portClassName}).get("value"));
+        assertEquals(1, server.getAttribute(re.getMetricsObjectName(), "ComponentCount"));
+
+        re.stopComponentAsync(0).join();
+        assertEquals(1, re.getMetrics().getStopLatency().getCount());
+        re.shutdown();
+        assertFalse(server.isRegistered(re.getMetricsObjectName()));
+    }
+}